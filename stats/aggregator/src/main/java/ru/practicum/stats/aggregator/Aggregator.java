@@ -12,7 +12,12 @@ public class Aggregator {
     public static void main(String[] args) {
         ConfigurableApplicationContext context = SpringApplication.run(Aggregator.class, args);
         AggregationStarter aggregator = context.getBean(AggregationStarter.class);
-        aggregator.start();
+        try {
+            aggregator.start();
+        } catch (RuntimeException e) {
+            // Без потребления сервис не должен оставаться живым для eureka и health
+            System.exit(SpringApplication.exit(context, () -> 1));
+        }
     }
 }
 
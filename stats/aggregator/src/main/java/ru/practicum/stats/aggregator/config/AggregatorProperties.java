@@ -0,0 +1,90 @@
+package ru.practicum.stats.aggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.practicum.stats.aggregator.state.StateStoreType;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties("app.aggregator")
+public class AggregatorProperties {
+    private StateStoreType stateStore = StateStoreType.PRIMITIVE;
+    // переиспользовать экземпляры UserActionAvro между poll вместо создания новых
+    private boolean reuseRecords = false;
+    private Parallel parallel = new Parallel();
+    private Retention retention = new Retention();
+    private Snapshot snapshot = new Snapshot();
+    private Coalesce coalesce = new Coalesce();
+    private Delta delta = new Delta();
+    private Neighbours neighbours = new Neighbours();
+    private Delivery delivery = new Delivery();
+
+    @Getter
+    @Setter
+    public static class Parallel {
+        // 1 - обработка в потоке консьюмера, больше 1 - число потоков-шардов
+        private int workers = 1;
+        // число полос блокировок общего хранилища сумм
+        private int sumStoreStripes = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class Retention {
+        // false - веса хранятся бессрочно
+        private boolean enabled = false;
+        // веса без действий пользователя дольше окна (по timestamp действий) вытесняются
+        private Duration window = Duration.ofDays(180);
+        // шаг проверки устаревших весов
+        private Duration bucket = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Snapshot {
+        private boolean enabled = false;
+        private String directory = "snapshots/aggregator";
+        private Duration interval = Duration.ofMinutes(5);
+        // сколько последних снимков хранить на диске
+        private int retained = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class Coalesce {
+        private boolean enabled = true;
+        // 0 - схлопывание в пределах одного poll
+        private Duration window = Duration.ZERO;
+    }
+
+    @Getter
+    @Setter
+    public static class Delta {
+        private boolean enabled = false;
+        // минимальное изменение оценки пары, при котором она отправляется повторно
+        private double epsilon = 0.001;
+        // как часто досылать подавленные оценки
+        private Duration flushInterval = Duration.ofMinutes(1);
+        // сколько последних отправленных оценок помнить, примерно
+        private int maxTrackedPairs = 1_000_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Neighbours {
+        private boolean enabled = false;
+        // сколько самых похожих мероприятий публикуется для события
+        private int k = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Delivery {
+        private DeliveryMode mode = DeliveryMode.AT_LEAST_ONCE;
+        // должен быть уникален для каждого экземпляра агрегатора
+        private String transactionalId = "aggregator-tx";
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.stats.aggregator.config;
+
+public enum DeliveryMode {
+    // отправка без ожидания и commitSync после poll: при сбое возможны повторы
+    AT_LEAST_ONCE,
+    // сходства и оффсеты консьюмера фиксируются одной транзакцией продюсера
+    EXACTLY_ONCE
+}
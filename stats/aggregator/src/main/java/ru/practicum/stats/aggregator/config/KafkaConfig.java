@@ -1,13 +1,14 @@
 package ru.practicum.stats.aggregator.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.deserializer.BaseAvroDeserializer;
 
 import java.util.Properties;
 
@@ -30,11 +31,14 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.acks}")
     private String acks;
 
+    @Value("${spring.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
     @Value("${app.kafka.topics.user-actions}")
     private String sensorTopic;
 
     @Bean
-    public KafkaConsumer<Long, UserActionAvro> getKafkaConsumer() {
+    public KafkaConsumer<Long, UserActionAvro> getKafkaConsumer(AggregatorProperties properties) {
         Properties props = new Properties();
         props.put(org.apache.kafka.clients.consumer.ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(org.apache.kafka.clients.consumer.ConsumerConfig.GROUP_ID_CONFIG, groupId);
@@ -42,6 +46,18 @@ public class KafkaConfig {
         props.put(org.apache.kafka.clients.consumer.ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "ru.practicum.kafka.deserializer.UserActionDeserializer");
         props.put(org.apache.kafka.clients.consumer.ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
         props.put("specific.avro.reader", "true");
+        // Оффсеты фиксирует AggregationStarter после отправки накопленных сходств: автоматическая фиксация
+        // в poll сдвинула бы их дальше сходств, ещё лежащих в буфере окна, и они потерялись бы при сбое
+        props.put(org.apache.kafka.clients.consumer.ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        if (properties.isReuseRecords()) {
+            // действия poll обрабатываются целиком до следующего poll, поэтому их записи можно переиспользовать
+            props.put(org.apache.kafka.clients.consumer.ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+            props.put(BaseAvroDeserializer.REUSE_RECORDS_CONFIG, maxPollRecords);
+        }
+        if (properties.getDelivery().getMode() == DeliveryMode.EXACTLY_ONCE) {
+            // оффсеты фиксируются транзакцией продюсера
+            props.put(org.apache.kafka.clients.consumer.ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        }
 
         log.info("Создан Kafka Consumer: bootstrap={}, group={}, topic={}", bootstrapServers, groupId, sensorTopic);
 
@@ -49,15 +65,22 @@ public class KafkaConfig {
     }
 
     @Bean
-    public KafkaProducer<String, EventSimilarityAvro> getKafkaProducer() {
+    public KafkaProducer<String, SpecificRecordBase> getKafkaProducer(AggregatorProperties properties) {
         Properties props = new Properties();
         props.put(org.apache.kafka.clients.producer.ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(org.apache.kafka.clients.producer.ProducerConfig.CLIENT_ID_CONFIG, clientId);
         props.put(org.apache.kafka.clients.producer.ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer");
         props.put(org.apache.kafka.clients.producer.ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "ru.practicum.kafka.serializer.GeneralAvroSerializer");
         props.put(org.apache.kafka.clients.producer.ProducerConfig.ACKS_CONFIG, acks);
+        if (properties.getDelivery().getMode() == DeliveryMode.EXACTLY_ONCE) {
+            props.put(org.apache.kafka.clients.producer.ProducerConfig.ACKS_CONFIG, "all");
+            props.put(org.apache.kafka.clients.producer.ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+            props.put(org.apache.kafka.clients.producer.ProducerConfig.TRANSACTIONAL_ID_CONFIG,
+                    properties.getDelivery().getTransactionalId());
+        }
 
-        log.info("Создан Kafka Producer: bootstrap={}, client={}", bootstrapServers, clientId);
+        log.info("Создан Kafka Producer: bootstrap={}, client={}, delivery={}",
+                bootstrapServers, clientId, properties.getDelivery().getMode());
         return new KafkaProducer<>(props);
     }
 }
\ No newline at end of file
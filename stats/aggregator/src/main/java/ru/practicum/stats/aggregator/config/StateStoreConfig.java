@@ -0,0 +1,53 @@
+package ru.practicum.stats.aggregator.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.stats.aggregator.service.AggregationEngine;
+import ru.practicum.stats.aggregator.service.EventSimilarityService;
+import ru.practicum.stats.aggregator.service.SequentialAggregationEngine;
+import ru.practicum.stats.aggregator.service.ShardedAggregationEngine;
+import ru.practicum.stats.aggregator.state.SimilaritySumStore;
+import ru.practicum.stats.aggregator.state.StateStores;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Configuration
+public class StateStoreConfig {
+
+    @Bean
+    public WeightStore weightStore(AggregatorProperties properties) {
+        log.info("Хранилище состояния агрегатора: {}", properties.getStateStore());
+        return StateStores.newWeightStore(properties.getStateStore());
+    }
+
+    @Bean
+    public SimilaritySumStore similaritySumStore(AggregatorProperties properties) {
+        AggregatorProperties.Parallel parallel = properties.getParallel();
+        if (parallel.getWorkers() > 1) {
+            return StateStores.newConcurrentSumStore(properties.getStateStore(), parallel.getSumStoreStripes());
+        }
+        return StateStores.newSumStore(properties.getStateStore());
+    }
+
+    @Bean(destroyMethod = "close")
+    public AggregationEngine aggregationEngine(AggregatorProperties properties,
+                                               EventSimilarityService similarityService,
+                                               SimilaritySumStore sumStore) {
+        int workers = properties.getParallel().getWorkers();
+        if (workers <= 1) {
+            return new SequentialAggregationEngine(similarityService);
+        }
+        // Первый шард - основной бин, остальные получают свои хранилища весов и общее хранилище сумм
+        List<EventSimilarityService> shards = new ArrayList<>(workers);
+        shards.add(similarityService);
+        for (int i = 1; i < workers; i++) {
+            shards.add(new EventSimilarityService(
+                    StateStores.newWeightStore(properties.getStateStore()), sumStore, properties));
+        }
+        return new ShardedAggregationEngine(shards);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.stats.aggregator.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.util.List;
+
+public interface AggregationEngine extends AutoCloseable {
+
+    // Обрабатывает весь результат poll и возвращает пересчитанные сходства
+    List<EventSimilarityAvro> process(ConsumerRecords<Long, UserActionAvro> records);
+
+    // Хранилища весов всех шардов; обращаться к ним можно только между вызовами process
+    List<WeightStore> weightStores();
+
+    // Восстанавливает вес из снимка в шарде, которому принадлежит пользователь
+    void restoreWeight(long eventId, long userId, double weight, long lastActionAt);
+
+    // Timestamp последнего действия пары для снимка; ActivityTracker.UNKNOWN, если вытеснение выключено
+    long lastActionAt(long eventId, long userId);
+
+    // Сходства всех пар по текущим суммам; обращаться можно только между вызовами process
+    void forEachSimilarity(SimilarityConsumer consumer);
+
+    @Override
+    default void close() {
+    }
+
+    @FunctionalInterface
+    interface SimilarityConsumer {
+        void accept(long first, long second, double similarity);
+    }
+}
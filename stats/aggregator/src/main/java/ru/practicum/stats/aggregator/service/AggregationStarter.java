@@ -2,20 +2,37 @@ package ru.practicum.stats.aggregator.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.EventNeighboursAvro;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.config.DeliveryMode;
+import ru.practicum.stats.aggregator.snapshot.SnapshotManager;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -28,23 +45,72 @@ public class AggregationStarter {
     @Value("${app.kafka.topics.events-similarity}")
     private String eventSimilarityTopic;
 
+    @Value("${app.kafka.topics.events-neighbours}")
+    private String eventNeighboursTopic;
+
     @Value("${spring.kafka.consumer.poll-timeout}")
     private Duration pollTimeout;
 
-    private final EventSimilarityService similarityService;
+    private final AggregationEngine aggregationEngine;
 
     private final KafkaConsumer<Long, UserActionAvro> consumer;
 
-    private final KafkaProducer<String, EventSimilarityAvro> producer;
+    private final KafkaProducer<String, SpecificRecordBase> producer;
+
+    private final SnapshotManager snapshotManager;
+
+    private final SimilarityCoalescer coalescer;
+
+    private final SimilarityDeltaFilter deltaFilter;
+
+    private final NeighbourIndex neighbourIndex;
+
+    private final AggregatorProperties properties;
 
+    // Оффсеты, до которых записи уже были учтены в отправленных сходствах: после восстановления из снимка
+    // они переигрываются только для состояния, без повторной отправки
+    private final Map<TopicPartition, Long> replayUntil = new HashMap<>();
+
+    // Возвращается только после штатной остановки, ошибка обработки пробрасывается вызывающему
     public void start() {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             log.info("Получен сигнал завершения. Останавливаем агрегатор.");
             consumer.wakeup();
         }));
 
+        boolean exactlyOnce = properties.getDelivery().getMode() == DeliveryMode.EXACTLY_ONCE;
+        boolean stoppedCleanly = false;
         try {
-            consumer.subscribe(Collections.singletonList(userActionTopic));
+            if (exactlyOnce) {
+                producer.initTransactions();
+                log.info("Включена транзакционная доставка: transactional.id={}",
+                        properties.getDelivery().getTransactionalId());
+            }
+            Map<TopicPartition, Long> restoredOffsets = new HashMap<>(snapshotManager.restoreLatest());
+            consumer.subscribe(Collections.singletonList(userActionTopic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    // Продолжаем с оффсетов снимка: повтор действий безопасен, т.к. вес меняется только при увеличении
+                    Map<TopicPartition, OffsetAndMetadata> committed = restoredOffsets.isEmpty()
+                            ? Collections.emptyMap()
+                            : consumer.committed(new HashSet<>(partitions));
+                    for (TopicPartition partition : partitions) {
+                        Long offset = restoredOffsets.remove(partition);
+                        if (offset != null) {
+                            log.info("Партиция {}: продолжаем чтение с оффсета снимка {}", partition, offset);
+                            consumer.seek(partition, offset);
+                            OffsetAndMetadata committedOffset = committed.get(partition);
+                            if (committedOffset != null && committedOffset.offset() > offset) {
+                                replayUntil.put(partition, committedOffset.offset());
+                            }
+                        }
+                    }
+                }
+            });
 
             log.info("Подписались на топик: {}", userActionTopic);
 
@@ -52,32 +118,52 @@ public class AggregationStarter {
 
                 ConsumerRecords<Long, UserActionAvro> records = consumer.poll(pollTimeout);
 
-                for (ConsumerRecord<Long, UserActionAvro> record : records) {
-                    Long eventId = record.key();
-
-                    List<EventSimilarityAvro> similarities = similarityService.processUserAction(record.value());
+                if (!replayUntil.isEmpty()) {
+                    records = replay(records);
+                }
 
-                    for (EventSimilarityAvro similarity : similarities) {
-                        String key = similarity.getEventA() + "-" + similarity.getEventB();
-                        ProducerRecord<String, EventSimilarityAvro> message =
-                                new ProducerRecord<>(eventSimilarityTopic, key, similarity);
+                coalescer.add(aggregationEngine.process(records));
 
-                        producer.send(message);
+                // Оффсеты фиксируем только после отправки всего накопленного в окне
+                if (coalescer.isFlushDue()) {
+                    if (exactlyOnce) {
+                        commitTransaction(false);
+                    } else {
+                        sendPending(false);
+                        consumer.commitSync();
                     }
+                    snapshotManager.snapshotIfDue(this::currentPositions);
                 }
-                consumer.commitSync();
             }
         } catch (WakeupException ignored) {
             log.info("Получен WakeupException - завершаем работу");
+            stoppedCleanly = true;
         } catch (Exception e) {
             log.error("Ошибка во время обработки", e);
+            // Потребление остановлено: вызывающий завершает процесс, чтобы после перезапуска
+            // чтение продолжилось с зафиксированных оффсетов
+            throw new IllegalStateException("Агрегатор остановлен из-за ошибки", e);
         } finally {
 
             try {
-                log.info("Сбрасываем данные из буфера продюсера");
-                producer.flush();
-                log.info("Фиксируем оффсеты обработанных сообщений.");
-                consumer.commitSync();
+                if (exactlyOnce) {
+                    // После ошибки транзакция уже прервана, оффсеты остаются на последней зафиксированной
+                    if (stoppedCleanly) {
+                        log.info("Фиксируем накопленные сходства и оффсеты последней транзакцией");
+                        commitTransaction(true);
+                    }
+                } else {
+                    log.info("Отправляем накопленные сходства");
+                    sendPending(true);
+                    log.info("Сбрасываем данные из буфера продюсера");
+                    producer.flush();
+                    log.info("Фиксируем оффсеты обработанных сообщений.");
+                    consumer.commitSync();
+                }
+                // poll обработан целиком, состояние соответствует текущим позициям консьюмера
+                if (stoppedCleanly && snapshotManager.isEnabled()) {
+                    snapshotManager.snapshot(currentPositions());
+                }
                 log.info("Все данные сохранены, можно завершать работу");
 
             } finally {
@@ -88,4 +174,86 @@ public class AggregationStarter {
             }
         }
     }
+
+    // Применяет к состоянию уже отправленные ранее записи и возвращает только новые
+    private ConsumerRecords<Long, UserActionAvro> replay(ConsumerRecords<Long, UserActionAvro> records) {
+        Map<TopicPartition, List<ConsumerRecord<Long, UserActionAvro>>> replayed = new HashMap<>();
+        Map<TopicPartition, List<ConsumerRecord<Long, UserActionAvro>>> fresh = new HashMap<>();
+        for (TopicPartition partition : records.partitions()) {
+            Long until = replayUntil.get(partition);
+            for (ConsumerRecord<Long, UserActionAvro> record : records.records(partition)) {
+                boolean alreadySent = until != null && record.offset() < until;
+                Map<TopicPartition, List<ConsumerRecord<Long, UserActionAvro>>> target = alreadySent ? replayed : fresh;
+                target.computeIfAbsent(partition, k -> new ArrayList<>()).add(record);
+            }
+            if (until != null && consumer.position(partition) >= until) {
+                replayUntil.remove(partition);
+                log.info("Партиция {}: состояние догнало зафиксированный оффсет {}", partition, until);
+            }
+        }
+        if (!replayed.isEmpty()) {
+            aggregationEngine.process(new ConsumerRecords<>(replayed));
+        }
+        return new ConsumerRecords<>(fresh);
+    }
+
+    // Сходства и оффсеты консьюмера публикуются атомарно одной транзакцией на окно схлопывания
+    private void commitTransaction(boolean finalFlush) {
+        // Позиции вычисляем до начала транзакции: wakeup консьюмера не должен прервать её на середине
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        currentPositions().forEach((partition, position) -> offsets.put(partition, new OffsetAndMetadata(position)));
+
+        producer.beginTransaction();
+        try {
+            sendPending(finalFlush);
+            producer.sendOffsetsToTransaction(offsets, consumer.groupMetadata());
+            producer.commitTransaction();
+        } catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException e) {
+            // Продюсер больше не может работать, транзакцию прервёт брокер
+            throw e;
+        } catch (KafkaException e) {
+            // Состояние в памяти уже учитывает эти записи, поэтому останавливаемся:
+            // после перезапуска чтение продолжится с последних зафиксированных оффсетов
+            producer.abortTransaction();
+            throw e;
+        }
+    }
+
+    // Отправляет накопленные в окне сходства и изменившиеся списки похожих мероприятий
+    private void sendPending(boolean finalFlush) {
+        List<EventSimilarityAvro> similarities = coalescer.drain();
+        neighbourIndex.update(similarities);
+        send(deltaFilter.filter(similarities, finalFlush));
+        if (neighbourIndex.isEnabled()) {
+            // Состояние полное, когда партиции назначены и переиграны все действия до зафиксированных оффсетов
+            if (!neighbourIndex.isRebuilt() && !consumer.assignment().isEmpty() && replayUntil.isEmpty()) {
+                neighbourIndex.rebuild(aggregationEngine::forEachSimilarity);
+            }
+            sendNeighbours(neighbourIndex.drainChanged());
+        }
+    }
+
+    private void send(List<EventSimilarityAvro> similarities) {
+        for (EventSimilarityAvro similarity : similarities) {
+            String key = similarity.getEventA() + "-" + similarity.getEventB();
+            ProducerRecord<String, SpecificRecordBase> message =
+                    new ProducerRecord<>(eventSimilarityTopic, key, similarity);
+
+            producer.send(message);
+        }
+    }
+
+    // Топик сжимаемый: ключ - событие, пустое значение удаляет его список
+    private void sendNeighbours(Map<Long, EventNeighboursAvro> changed) {
+        changed.forEach((eventId, neighbours) ->
+                producer.send(new ProducerRecord<>(eventNeighboursTopic, String.valueOf(eventId), neighbours)));
+    }
+
+    private Map<TopicPartition, Long> currentPositions() {
+        Map<TopicPartition, Long> positions = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            positions.put(partition, consumer.position(partition));
+        }
+        return positions;
+    }
 }
\ No newline at end of file
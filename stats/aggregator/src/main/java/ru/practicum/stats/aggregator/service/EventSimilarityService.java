@@ -1,55 +1,121 @@
 package ru.practicum.stats.aggregator.service;
 
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.stats.avro.ActionTypeAvro;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.state.ActivityTracker;
+import ru.practicum.stats.aggregator.state.SimilaritySumStore;
+import ru.practicum.stats.aggregator.state.WeightStore;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
 public class EventSimilarityService {
 
-    // событие -> (пользователь -> максимальный вес)
-    private final Map<Long, Map<Long, Double>> eventUserMaxWeights = new ConcurrentHashMap<>();
+    // событие -> (пользователь -> максимальный вес) и пользователь -> события
+    @Getter(AccessLevel.PACKAGE)
+    private final WeightStore weightStore;
 
-    //суммы для каждого события
-    private final Map<Long, Double> eventWeightSums = new ConcurrentHashMap<>();
+    // суммы весов событий и суммы минимальных весов для пар мероприятий
+    private final SimilaritySumStore sumStore;
 
-    // Map<EventId1, Map<EventId2, MinWeightSum>> - сумма минимальных весов для пар мероприятий
-    private final Map<Long, Map<Long, Double>> minWeightsSums = new ConcurrentHashMap<>();
+    // время последних действий для вытеснения устаревших весов; null - веса хранятся бессрочно
+    private final ActivityTracker activityTracker;
+
+    public EventSimilarityService(WeightStore weightStore, SimilaritySumStore sumStore,
+                                  AggregatorProperties properties) {
+        this.weightStore = weightStore;
+        this.sumStore = sumStore;
+        AggregatorProperties.Retention retention = properties.getRetention();
+        this.activityTracker = retention.isEnabled()
+                ? new ActivityTracker(retention.getWindow().toMillis(), retention.getBucket().toMillis())
+                : null;
+    }
 
     public List<EventSimilarityAvro> processUserAction(UserActionAvro action) {
         long eventId = action.getEventId();
         long userId = action.getUserId();
         double newWeight = getWeight(action.getActionType());
 
-        double oldWeight = getCurrentWeight(eventId, userId);
+        double oldWeight = weightStore.getWeight(eventId, userId);
 
+        List<EventSimilarityAvro> results;
         if (newWeight <= oldWeight) {
             log.debug("Вес не увеличился: событие={}, пользователь={}, старый={}, новый={}",
                     eventId, userId, oldWeight, newWeight);
-            return Collections.emptyList();
+            results = Collections.emptyList();
+        } else {
+            // Обновляем данные
+            updateData(eventId, userId, newWeight, oldWeight);
+            results = calculateSimilarities(eventId, userId, oldWeight, newWeight, action.getTimestamp());
+        }
+
+        if (activityTracker != null) {
+            // Повторное действие продлевает жизнь веса, даже если он не увеличился
+            activityTracker.touch(eventId, userId, action.getTimestamp().toEpochMilli());
+            if (activityTracker.hasExpired()) {
+                results = evictInactive(results, action.getTimestamp());
+            }
+        }
+        return results;
+    }
+
+    // Восстанавливает вес из снимка вместе с timestamp последнего действия. Если время неизвестно
+    // (снимок сделан без вытеснения), вес начинает отслеживаться со следующего действия пары.
+    // Веса восстанавливаются не по порядку времени, поэтому до истечения окна после рестарта
+    // пара может задержаться дольше одной корзины, но раньше окна не вытесняется
+    public void restoreWeight(long eventId, long userId, double weight, long lastActionAt) {
+        weightStore.putWeight(eventId, userId, weight);
+        if (activityTracker != null && lastActionAt != ActivityTracker.UNKNOWN) {
+            activityTracker.touch(eventId, userId, lastActionAt);
+        }
+    }
+
+    // Timestamp последнего действия пары или ActivityTracker.UNKNOWN без вытеснения
+    public long lastActionAt(long eventId, long userId) {
+        return activityTracker != null ? activityTracker.lastActionAt(eventId, userId) : ActivityTracker.UNKNOWN;
+    }
+
+    // Вычитает устаревшие веса из сумм и возвращает пересчитанные сходства затронутых пар.
+    // Пара, у которой не осталось общих пользователей, отправляется с оценкой 0
+    private List<EventSimilarityAvro> evictInactive(List<EventSimilarityAvro> results, Instant timestamp) {
+        List<EventSimilarityAvro> updated = new ArrayList<>(results);
+        int before = weightStore.size();
+        activityTracker.expire((eventId, userId) -> evict(eventId, userId, timestamp, updated));
+        log.debug("Вытеснено устаревших весов: {}, пересчитано пар: {}",
+                before - weightStore.size(), updated.size() - results.size());
+        return updated;
+    }
+
+    private void evict(long eventId, long userId, Instant timestamp, List<EventSimilarityAvro> results) {
+        double weight = weightStore.removeWeight(eventId, userId);
+        if (weight <= 0) {
+            return;
         }
+        sumStore.addEventWeightSum(eventId, -weight);
 
-        // Обновляем данные
-        updateData(eventId, userId, newWeight, oldWeight);
+        weightStore.forEachUserEvent(userId, otherEventId -> {
+            double otherWeight = weightStore.getWeight(otherEventId, userId);
+            long first = Math.min(eventId, otherEventId);
+            long second = Math.max(eventId, otherEventId);
 
-        return calculateSimilarities(eventId, userId, oldWeight, newWeight, action.getTimestamp());
+            double sMin = sumStore.addMinWeightsSum(first, second, -Math.min(weight, otherWeight));
+            results.add(createMessage(first, second, calculateSimilarity(first, second, sMin), timestamp));
+        });
     }
 
     private void updateData(long eventId, long userId, double newWeight, double oldWeight) {
-        Map<Long, Double> userWeights = eventUserMaxWeights
-                .computeIfAbsent(eventId, k -> new ConcurrentHashMap<>());
-        userWeights.put(userId, newWeight);
+        weightStore.putWeight(eventId, userId, newWeight);
 
         double difference = newWeight - oldWeight;
-        double newSum = eventWeightSums.getOrDefault(eventId, 0.0) + difference;
-        eventWeightSums.put(eventId, newSum);
+        double newSum = sumStore.addEventWeightSum(eventId, difference);
 
         log.debug("Обновлено: событие={}, пользователь={}, вес {}→{}, сумма={}",
                 eventId, userId, oldWeight, newWeight, newSum);
@@ -60,13 +126,13 @@ public class EventSimilarityService {
 
         List<EventSimilarityAvro> results = new ArrayList<>();
 
-        for (long otherEventId : eventUserMaxWeights.keySet()) {
-            if (otherEventId == eventId) continue;
+        // Обходим только события этого пользователя, а не все известные события
+        weightStore.forEachUserEvent(userId, otherEventId -> {
+            if (otherEventId == eventId) return;
 
-            Map<Long, Double> otherWeights = eventUserMaxWeights.get(otherEventId);
-            Double otherWeight = (otherWeights != null) ? otherWeights.get(userId) : null;
+            double otherWeight = weightStore.getWeight(otherEventId, userId);
 
-            if (otherWeight == null) continue;
+            if (otherWeight <= 0) return;
 
             // Обновляем S_min и считаем сходство
             double similarity = updateAndCalculate(
@@ -75,7 +141,7 @@ public class EventSimilarityService {
             if (similarity > 0) {
                 results.add(createMessage(eventId, otherEventId, similarity, timestamp));
             }
-        }
+        });
 
         return results;
     }
@@ -88,32 +154,38 @@ public class EventSimilarityService {
         long second = Math.max(eventId1, eventId2);
 
         // Обновляем S_min
-        Map<Long, Double> pairSums = minWeightsSums.computeIfAbsent(first, k -> new ConcurrentHashMap<>());
-        double currentMin = pairSums.getOrDefault(second, 0.0);
-
         double oldMin = Math.min(oldWeight1, weight2);
         double newMin = Math.min(newWeight1, weight2);
         double diff = newMin - oldMin;
 
-        pairSums.put(second, currentMin + diff);
+        double sMin = sumStore.addMinWeightsSum(first, second, diff);
 
-        // Считаем похожесть
-        Double sum1 = eventWeightSums.get(first);
-        Double sum2 = eventWeightSums.get(second);
+        return calculateSimilarity(first, second, sMin);
+    }
 
-        if (sum1 == null || sum2 == null || sum1 <= 0 || sum2 <= 0) {
+    // Сходство пары по текущим суммам; пара упорядочена: first < second
+    double currentSimilarity(long first, long second) {
+        return calculateSimilarity(first, second, sumStore.getMinWeightsSum(first, second));
+    }
+
+    // Сходства всех пар с ненулевой S_min по текущим суммам
+    void forEachSimilarity(AggregationEngine.SimilarityConsumer consumer) {
+        sumStore.forEachMinWeightsSum((first, second, sMin) ->
+                consumer.accept(first, second, calculateSimilarity(first, second, sMin)));
+    }
+
+    // Считаем похожесть
+    private double calculateSimilarity(long first, long second, double sMin) {
+        double sum1 = sumStore.getEventWeightSum(first);
+        double sum2 = sumStore.getEventWeightSum(second);
+
+        if (sMin <= 0 || sum1 <= 0 || sum2 <= 0) {
             return 0.0;
         }
 
-        double sMin = pairSums.get(second);
         return sMin / Math.sqrt(sum1 * sum2);
     }
 
-    private double getCurrentWeight(long eventId, long userId) {
-        Map<Long, Double> weights = eventUserMaxWeights.get(eventId);
-        return (weights != null) ? weights.getOrDefault(userId, 0.0) : 0.0;
-    }
-
     private EventSimilarityAvro createMessage(long eventId1, long eventId2,
                                               double similarity, Instant timestamp) {
         long first = Math.min(eventId1, eventId2);
@@ -135,4 +207,4 @@ public class EventSimilarityService {
             default -> throw new IllegalArgumentException("Неизвестный тип: " + actionType);
         };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+package ru.practicum.stats.aggregator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.EventNeighboursAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.NeighbourAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Списки K самых похожих мероприятий для каждого события, обновляемые по каждой пересчитанной оценке пары.
+ * <p>
+ * Для события хранится до 2K кандидатов по убыванию оценки: запас нужен, чтобы после снижения оценки
+ * соседа из первых K его место занял уже известный кандидат. Кандидат, вытесненный из запаса, вернётся
+ * при следующем пересчёте своей пары. Наружу публикуются только события, у которых изменились первые K.
+ * <p>
+ * После запуска индекс пуст, а в сжимаемом топике лежат полные списки. Пока индекс не перестроен
+ * по всем парам состояния ({@link #rebuild}), события только запоминаются как изменённые, и
+ * {@link #drainChanged()} ничего не отдаёт: иначе список из одной-двух пересчитанных пар заменил бы в топике
+ * верный. Используется только из потока консьюмера.
+ */
+@Component
+public class NeighbourIndex {
+
+    private final AggregatorProperties.Neighbours properties;
+    private final Map<Long, Neighbours> neighbours = new HashMap<>();
+    // событие -> время последнего изменения первых K
+    private final Map<Long, Instant> changed = new LinkedHashMap<>();
+    private final Counter publishedCounter;
+
+    private boolean rebuilt;
+
+    public NeighbourIndex(AggregatorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getNeighbours();
+        this.publishedCounter = Counter.builder("aggregator.neighbours.published")
+                .description("Отправленные изменения списков похожих мероприятий")
+                .register(meterRegistry);
+        Gauge.builder("aggregator.neighbours.events", neighbours, Map::size)
+                .description("События со списком похожих мероприятий")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    public void update(List<EventSimilarityAvro> similarities) {
+        if (!isEnabled()) {
+            return;
+        }
+        for (EventSimilarityAvro similarity : similarities) {
+            if (rebuilt) {
+                update(similarity.getEventA(), similarity.getEventB(), similarity.getScore(), similarity.getTimestamp());
+                update(similarity.getEventB(), similarity.getEventA(), similarity.getScore(), similarity.getTimestamp());
+            } else {
+                changed.put(similarity.getEventA(), similarity.getTimestamp());
+                changed.put(similarity.getEventB(), similarity.getTimestamp());
+            }
+        }
+    }
+
+    // Строит списки заново по сходствам всех пар; события, изменённые до перестройки, будут опубликованы
+    public void rebuild(SimilaritySource source) {
+        neighbours.clear();
+        int k = properties.getK();
+        source.forEachSimilarity((first, second, similarity) -> {
+            add(first, second, similarity, k);
+            add(second, first, similarity, k);
+        });
+        rebuilt = true;
+    }
+
+    // Списки событий, у которых изменились первые K; null - у события больше нет похожих.
+    // До перестройки индекса пусто
+    public Map<Long, EventNeighboursAvro> drainChanged() {
+        if (!rebuilt) {
+            return Map.of();
+        }
+        Map<Long, EventNeighboursAvro> result = new LinkedHashMap<>(changed.size());
+        for (Map.Entry<Long, Instant> entry : changed.entrySet()) {
+            long eventId = entry.getKey();
+            Neighbours list = neighbours.get(eventId);
+            result.put(eventId, list == null ? null : EventNeighboursAvro.newBuilder()
+                    .setEventId(eventId)
+                    .setNeighbours(list.top(properties.getK()))
+                    .setTimestamp(entry.getValue())
+                    .build());
+        }
+        changed.clear();
+        publishedCounter.increment(result.size());
+        return result;
+    }
+
+    private void update(long eventId, long neighbourId, double score, Instant timestamp) {
+        int k = properties.getK();
+        Neighbours list = neighbours.get(eventId);
+        if (list == null) {
+            if (score <= 0) {
+                return;
+            }
+            list = new Neighbours(k * 2);
+            neighbours.put(eventId, list);
+        }
+        if (list.update(neighbourId, score, k)) {
+            changed.put(eventId, timestamp);
+        }
+        if (list.isEmpty()) {
+            neighbours.remove(eventId);
+        }
+    }
+
+    private void add(long eventId, long neighbourId, double score, int k) {
+        if (score <= 0) {
+            return;
+        }
+        neighbours.computeIfAbsent(eventId, id -> new Neighbours(k * 2)).update(neighbourId, score, k);
+    }
+
+    @FunctionalInterface
+    public interface SimilaritySource {
+        void forEachSimilarity(AggregationEngine.SimilarityConsumer consumer);
+    }
+
+    // Кандидаты события по убыванию оценки
+    private static final class Neighbours {
+        private final long[] ids;
+        private final double[] scores;
+        private int size;
+
+        private Neighbours(int capacity) {
+            this.ids = new long[capacity];
+            this.scores = new double[capacity];
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        // Возвращает true, если изменились первые k
+        private boolean update(long id, double score, int k) {
+            int position = indexOf(id);
+            if (position >= 0) {
+                if (scores[position] == score) {
+                    return false;
+                }
+                removeAt(position);
+                if (score <= 0) {
+                    return position < k;
+                }
+            } else if (score <= 0) {
+                return false;
+            } else if (size == ids.length) {
+                if (score <= scores[size - 1]) {
+                    return false;
+                }
+                size--;
+            }
+            int inserted = insert(id, score);
+            return (position >= 0 && position < k) || inserted < k;
+        }
+
+        private int insert(long id, double score) {
+            int position = size;
+            while (position > 0 && scores[position - 1] < score) {
+                ids[position] = ids[position - 1];
+                scores[position] = scores[position - 1];
+                position--;
+            }
+            ids[position] = id;
+            scores[position] = score;
+            size++;
+            return position;
+        }
+
+        private void removeAt(int position) {
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(scores, position + 1, scores, position, size - position - 1);
+            size--;
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private List<NeighbourAvro> top(int k) {
+            int count = Math.min(k, size);
+            List<NeighbourAvro> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(NeighbourAvro.newBuilder()
+                        .setEventId(ids[i])
+                        .setScore(scores[i])
+                        .build());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.stats.aggregator.service;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class SequentialAggregationEngine implements AggregationEngine {
+
+    private final EventSimilarityService similarityService;
+
+    @Override
+    public List<EventSimilarityAvro> process(ConsumerRecords<Long, UserActionAvro> records) {
+        List<EventSimilarityAvro> results = new ArrayList<>();
+        for (ConsumerRecord<Long, UserActionAvro> record : records) {
+            results.addAll(similarityService.processUserAction(record.value()));
+        }
+        return results;
+    }
+
+    @Override
+    public List<WeightStore> weightStores() {
+        return List.of(similarityService.getWeightStore());
+    }
+
+    @Override
+    public void restoreWeight(long eventId, long userId, double weight, long lastActionAt) {
+        similarityService.restoreWeight(eventId, userId, weight, lastActionAt);
+    }
+
+    @Override
+    public long lastActionAt(long eventId, long userId) {
+        return similarityService.lastActionAt(eventId, userId);
+    }
+
+    @Override
+    public void forEachSimilarity(SimilarityConsumer consumer) {
+        similarityService.forEachSimilarity(consumer);
+    }
+}
@@ -0,0 +1,156 @@
+package ru.practicum.stats.aggregator.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Параллельная агрегация: записи каждой партиции раскладываются по шардам по userId.
+ * Шард владеет весами своих пользователей и обрабатывается одним потоком, поэтому действия
+ * одного пользователя применяются в порядке оффсетов партиции. Суммы S_A и S_min аддитивны
+ * по пользователям, поэтому шарды прибавляют свои приращения к общему потокобезопасному хранилищу.
+ * Вызов process возвращается только после обработки всего poll всеми шардами.
+ * <p>
+ * Одну пару могут пересчитать несколько шардов, и порядок их оценок неизвестен, поэтому после завершения
+ * всех шардов оценка каждой затронутой пары берётся заново из общих сумм.
+ */
+@Slf4j
+public class ShardedAggregationEngine implements AggregationEngine {
+
+    private final List<EventSimilarityService> shards;
+    private final List<ExecutorService> workers;
+
+    public ShardedAggregationEngine(List<EventSimilarityService> shards) {
+        this.shards = List.copyOf(shards);
+        this.workers = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            String name = "aggregator-worker-" + i;
+            workers.add(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        log.info("Запущена параллельная агрегация: шардов={}", shards.size());
+    }
+
+    @Override
+    public List<EventSimilarityAvro> process(ConsumerRecords<Long, UserActionAvro> records) {
+        List<List<UserActionAvro>> slices = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            slices.add(new ArrayList<>());
+        }
+        for (TopicPartition partition : records.partitions()) {
+            for (ConsumerRecord<Long, UserActionAvro> record : records.records(partition)) {
+                slices.get(shardOf(record.value().getUserId())).add(record.value());
+            }
+        }
+
+        List<Future<List<EventSimilarityAvro>>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            List<UserActionAvro> slice = slices.get(i);
+            if (slice.isEmpty()) {
+                continue;
+            }
+            EventSimilarityService shard = shards.get(i);
+            futures.add(workers.get(i).submit(() -> processSlice(shard, slice)));
+        }
+
+        List<EventSimilarityAvro> results = new ArrayList<>();
+        for (Future<List<EventSimilarityAvro>> future : futures) {
+            results.addAll(await(future));
+        }
+        if (futures.size() > 1) {
+            refreshScores(results);
+        }
+        return results;
+    }
+
+    private void refreshScores(List<EventSimilarityAvro> results) {
+        EventSimilarityService any = shards.get(0);
+        Map<PairKey, Double> scores = new HashMap<>();
+        for (EventSimilarityAvro similarity : results) {
+            PairKey pair = new PairKey(similarity.getEventA(), similarity.getEventB());
+            similarity.setScore(scores.computeIfAbsent(pair,
+                    key -> any.currentSimilarity(key.first(), key.second())));
+        }
+    }
+
+    @Override
+    public List<WeightStore> weightStores() {
+        return shards.stream()
+                .map(EventSimilarityService::getWeightStore)
+                .toList();
+    }
+
+    @Override
+    public void restoreWeight(long eventId, long userId, double weight, long lastActionAt) {
+        shards.get(shardOf(userId)).restoreWeight(eventId, userId, weight, lastActionAt);
+    }
+
+    @Override
+    public long lastActionAt(long eventId, long userId) {
+        return shards.get(shardOf(userId)).lastActionAt(eventId, userId);
+    }
+
+    // Хранилище сумм общее для всех шардов
+    @Override
+    public void forEachSimilarity(SimilarityConsumer consumer) {
+        shards.get(0).forEachSimilarity(consumer);
+    }
+
+    @Override
+    public void close() {
+        workers.forEach(ExecutorService::shutdown);
+        for (ExecutorService worker : workers) {
+            try {
+                if (!worker.awaitTermination(10, TimeUnit.SECONDS)) {
+                    worker.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    private int shardOf(long userId) {
+        return Math.floorMod(Long.hashCode(userId), shards.size());
+    }
+
+    private static List<EventSimilarityAvro> processSlice(EventSimilarityService shard, List<UserActionAvro> slice) {
+        List<EventSimilarityAvro> results = new ArrayList<>();
+        for (UserActionAvro action : slice) {
+            results.addAll(shard.processUserAction(action));
+        }
+        return results;
+    }
+
+    private static List<EventSimilarityAvro> await(Future<List<EventSimilarityAvro>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание потоков агрегации прервано", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка в потоке агрегации", e.getCause());
+        }
+    }
+
+    private record PairKey(long first, long second) {
+    }
+}
@@ -0,0 +1,88 @@
+package ru.practicum.stats.aggregator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Схлопывает пересчёты сходства одной пары событий: до отправки в Kafka остаётся только
+ * последняя оценка пары, полученная за poll или за настроенное окно.
+ */
+@Slf4j
+@Component
+public class SimilarityCoalescer {
+
+    private final AggregatorProperties.Coalesce properties;
+    private final Map<PairKey, EventSimilarityAvro> pending = new LinkedHashMap<>();
+    private final List<EventSimilarityAvro> passthrough = new ArrayList<>();
+    private final Counter computedCounter;
+    private final Counter emittedCounter;
+
+    private long windowStartedAt = System.currentTimeMillis();
+
+    public SimilarityCoalescer(AggregatorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getCoalesce();
+        this.computedCounter = Counter.builder("aggregator.similarity.computed")
+                .description("Пересчитанные сходства пар событий")
+                .register(meterRegistry);
+        this.emittedCounter = Counter.builder("aggregator.similarity.emitted")
+                .description("Сходства, отправленные в Kafka после схлопывания")
+                .register(meterRegistry);
+        Gauge.builder("aggregator.similarity.coalesce.ratio", this, SimilarityCoalescer::emittedRatio)
+                .description("Доля отправленных сходств от пересчитанных")
+                .register(meterRegistry);
+    }
+
+    public void add(List<EventSimilarityAvro> similarities) {
+        computedCounter.increment(similarities.size());
+        if (!properties.isEnabled()) {
+            passthrough.addAll(similarities);
+            return;
+        }
+        for (EventSimilarityAvro similarity : similarities) {
+            pending.put(new PairKey(similarity.getEventA(), similarity.getEventB()), similarity);
+        }
+    }
+
+    // Окно 0 означает сброс после каждого poll
+    public boolean isFlushDue() {
+        return !properties.isEnabled()
+                || System.currentTimeMillis() - windowStartedAt >= properties.getWindow().toMillis();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty() && passthrough.isEmpty();
+    }
+
+    public List<EventSimilarityAvro> drain() {
+        List<EventSimilarityAvro> result = new ArrayList<>(pending.size() + passthrough.size());
+        result.addAll(passthrough);
+        result.addAll(pending.values());
+        passthrough.clear();
+        pending.clear();
+        windowStartedAt = System.currentTimeMillis();
+        emittedCounter.increment(result.size());
+        if (!result.isEmpty()) {
+            log.debug("Схлопывание сходств: отправлено={}, всего пересчитано={}, доля={}",
+                    result.size(), computedCounter.count(), emittedRatio());
+        }
+        return result;
+    }
+
+    private double emittedRatio() {
+        double computed = computedCounter.count();
+        return computed > 0 ? emittedCounter.count() / computed : 1.0;
+    }
+
+    private record PairKey(long first, long second) {
+    }
+}
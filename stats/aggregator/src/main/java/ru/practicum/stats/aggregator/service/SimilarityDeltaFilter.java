@@ -0,0 +1,121 @@
+package ru.practicum.stats.aggregator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.state.LongPairDoubleHashMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Подавляет отправку сходства пары, если оценка изменилась не больше чем на epsilon
+ * относительно последней отправленной. Подавленные оценки запоминаются и раз в flush-interval
+ * отправляются, если отличаются от отправленных, поэтому расхождение с анализатором ограничено по времени.
+ * <p>
+ * Отправленные оценки хранятся в двух поколениях: при сбросе, если текущее набрало больше половины
+ * max-tracked-pairs, оно становится предыдущим, а прежнее предыдущее забывается. Забытая пара просто
+ * отправляется при следующем пересчёте, поэтому память ограничена без потери оценок.
+ * Используется только из потока консьюмера.
+ */
+@Slf4j
+@Component
+public class SimilarityDeltaFilter {
+
+    private final AggregatorProperties.Delta properties;
+    // пара событий -> последняя отправленная оценка: текущее и предыдущее поколения
+    private LongPairDoubleHashMap lastEmitted = new LongPairDoubleHashMap();
+    private LongPairDoubleHashMap previousEmitted = new LongPairDoubleHashMap();
+    // последние подавленные оценки, ещё не отправленные
+    private final Map<PairKey, EventSimilarityAvro> suppressed = new LinkedHashMap<>();
+    private final Counter suppressedCounter;
+    private final Counter flushedCounter;
+
+    private long lastFlushAt = System.currentTimeMillis();
+
+    public SimilarityDeltaFilter(AggregatorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getDelta();
+        this.suppressedCounter = Counter.builder("aggregator.similarity.suppressed")
+                .description("Сходства, не отправленные из-за изменения меньше epsilon")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("aggregator.similarity.drift.flushed")
+                .description("Подавленные сходства, отправленные периодическим сбросом")
+                .register(meterRegistry);
+        Gauge.builder("aggregator.similarity.suppressed.pending", suppressed, Map::size)
+                .description("Пары с неотправленной подавленной оценкой")
+                .register(meterRegistry);
+    }
+
+    public List<EventSimilarityAvro> filter(List<EventSimilarityAvro> similarities) {
+        return filter(similarities, false);
+    }
+
+    // forceFlush - досылать подавленные оценки независимо от интервала, например при остановке
+    public List<EventSimilarityAvro> filter(List<EventSimilarityAvro> similarities, boolean forceFlush) {
+        if (!properties.isEnabled()) {
+            return similarities;
+        }
+        double epsilon = properties.getEpsilon();
+        List<EventSimilarityAvro> result = new ArrayList<>(similarities.size());
+        for (EventSimilarityAvro similarity : similarities) {
+            long first = similarity.getEventA();
+            long second = similarity.getEventB();
+            double last = lastEmittedScore(first, second);
+            if (!Double.isNaN(last) && Math.abs(similarity.getScore() - last) <= epsilon) {
+                suppressed.put(new PairKey(first, second), similarity);
+                suppressedCounter.increment();
+                continue;
+            }
+            if (similarity.getScore() > 0) {
+                lastEmitted.put(first, second, similarity.getScore());
+            } else {
+                // у пары не осталось общих пользователей после вытеснения весов
+                lastEmitted.remove(first, second);
+                previousEmitted.remove(first, second);
+            }
+            suppressed.remove(new PairKey(first, second));
+            result.add(similarity);
+        }
+        if (forceFlush || System.currentTimeMillis() - lastFlushAt >= properties.getFlushInterval().toMillis()) {
+            flushDrift(result);
+        }
+        return result;
+    }
+
+    // Досылает подавленные оценки, которые отличаются от последних отправленных
+    private void flushDrift(List<EventSimilarityAvro> result) {
+        int flushed = 0;
+        for (EventSimilarityAvro similarity : suppressed.values()) {
+            long first = similarity.getEventA();
+            long second = similarity.getEventB();
+            if (lastEmittedScore(first, second) != similarity.getScore()) {
+                lastEmitted.put(first, second, similarity.getScore());
+                result.add(similarity);
+                flushed++;
+            }
+        }
+        suppressed.clear();
+        lastFlushAt = System.currentTimeMillis();
+        flushedCounter.increment(flushed);
+        log.debug("Периодический сброс подавленных сходств: отправлено={}, отслеживается пар={}",
+                flushed, lastEmitted.size() + previousEmitted.size());
+        if (lastEmitted.size() > properties.getMaxTrackedPairs() / 2) {
+            previousEmitted = lastEmitted;
+            lastEmitted = new LongPairDoubleHashMap();
+        }
+    }
+
+    private double lastEmittedScore(long first, long second) {
+        double last = lastEmitted.get(first, second, Double.NaN);
+        return Double.isNaN(last) ? previousEmitted.get(first, second, Double.NaN) : last;
+    }
+
+    private record PairKey(long first, long second) {
+    }
+}
@@ -0,0 +1,78 @@
+package ru.practicum.stats.aggregator.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Последовательное чтение memory-mapped файла окнами (см. {@link MappedFileWriter}).
+ */
+class MappedFileReader implements Closeable {
+
+    private static final long REGION_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer buffer;
+    private long regionStart;
+
+    MappedFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+    }
+
+    long size() {
+        return size;
+    }
+
+    int getInt() throws IOException {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    double getDouble() throws IOException {
+        ensure(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    byte[] getBytes(int length) throws IOException {
+        ensure(length);
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    // Читает long по абсолютной позиции, не сдвигая текущую
+    long getLongAt(long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Long.BYTES).getLong();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            long position = regionStart + buffer.position();
+            if (size - position < bytes) {
+                throw new IOException("Неожиданный конец файла снимка на позиции " + position);
+            }
+            map(position);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        regionStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_SIZE, size - position));
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.stats.aggregator.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Последовательная запись в memory-mapped файл заранее известного размера.
+ * Файл отображается окнами, чтобы не упираться в ограничение 2 ГБ на один MappedByteBuffer.
+ */
+class MappedFileWriter implements Closeable {
+
+    private static final long REGION_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer buffer;
+    private long regionStart;
+
+    MappedFileWriter(Path path, long size) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = size;
+        map(0);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    void putBytes(byte[] value) throws IOException {
+        ensure(value.length);
+        buffer.put(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.force();
+            map(regionStart + buffer.position());
+        }
+    }
+
+    private void map(long position) throws IOException {
+        regionStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(REGION_SIZE, size - position));
+    }
+}
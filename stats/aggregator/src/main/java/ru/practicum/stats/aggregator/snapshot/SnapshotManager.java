@@ -0,0 +1,283 @@
+package ru.practicum.stats.aggregator.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.service.AggregationEngine;
+import ru.practicum.stats.aggregator.state.SimilaritySumStore;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Снимки состояния агрегатора в локальных memory-mapped файлах.
+ * <p>
+ * Формат файла: заголовок (MAGIC, VERSION, время создания), оффсеты консьюмера, на которых сделан снимок,
+ * затем веса (событие, пользователь, вес, timestamp последнего действия), суммы S_A, суммы S_min
+ * и завершающий маркер END_MARKER. Снимок другой версии не загружается: запуск останавливается с ошибкой,
+ * а не продолжается с пустым состоянием от оффсетов консьюмера.
+ * Снимок пишется во временный файл и атомарно переименовывается, поэтому частично записанные файлы
+ * не попадают в выборку при восстановлении.
+ */
+@Slf4j
+@Component
+public class SnapshotManager {
+
+    private static final int MAGIC = 0x41475353;
+    // Версия 1 хранила веса без времени последнего действия, номер не переиспользуется
+    private static final int VERSION = 2;
+    private static final long END_MARKER = 0x454E44534E41504CL;
+    private static final String SUFFIX = ".snapshot";
+
+    private final AggregatorProperties.Snapshot properties;
+    private final AggregationEngine aggregationEngine;
+    private final SimilaritySumStore sumStore;
+
+    private long lastSnapshotAt = System.currentTimeMillis();
+
+    public SnapshotManager(AggregatorProperties properties,
+                           AggregationEngine aggregationEngine,
+                           SimilaritySumStore sumStore) {
+        this.properties = properties.getSnapshot();
+        this.aggregationEngine = aggregationEngine;
+        this.sumStore = sumStore;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // Загружает самый свежий дописанный снимок и возвращает оффсеты, с которых нужно продолжить чтение
+    public Map<TopicPartition, Long> restoreLatest() {
+        if (!isEnabled()) {
+            return Collections.emptyMap();
+        }
+        for (Path file : listSnapshots()) {
+            try {
+                if (!isComplete(file)) {
+                    log.warn("Снимок {} повреждён или не дописан, пропускаем", file);
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                Map<TopicPartition, Long> offsets = load(file);
+                log.info("Состояние восстановлено из снимка {} за {} мс, оффсеты: {}",
+                        file, System.currentTimeMillis() - start, offsets);
+                return offsets;
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalStateException("Не удалось загрузить снимок " + file, e);
+            }
+        }
+        log.info("Снимки состояния не найдены в {}, состояние будет восстановлено из топика",
+                properties.getDirectory());
+        return Collections.emptyMap();
+    }
+
+    public void snapshotIfDue(Supplier<Map<TopicPartition, Long>> offsets) {
+        if (isEnabled() && System.currentTimeMillis() - lastSnapshotAt >= properties.getInterval().toMillis()) {
+            snapshot(offsets.get());
+        }
+    }
+
+    // Вызывать только между обработками poll, когда состояние соответствует переданным оффсетам
+    public void snapshot(Map<TopicPartition, Long> offsets) {
+        if (!isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Path directory = Paths.get(properties.getDirectory());
+        Path target = directory.resolve(String.format("aggregator-%019d%s", start, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(temp);
+            write(temp, offsets, start);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotAt = start;
+            log.info("Снимок состояния {} записан за {} мс", target, System.currentTimeMillis() - start);
+            removeOutdated();
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка записи снимка состояния {}", target, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                log.warn("Не удалось удалить временный файл снимка {}", temp);
+            }
+        }
+    }
+
+    private void write(Path file, Map<TopicPartition, Long> offsets, long createdAt) throws IOException {
+        List<WeightStore> weightStores = aggregationEngine.weightStores();
+        long weightCount = weightStores.stream().mapToLong(WeightStore::size).sum();
+        long eventCount = sumStore.eventCount();
+        long pairCount = sumStore.pairCount();
+
+        Map<TopicPartition, byte[]> topics = new HashMap<>();
+        long offsetsSize = Integer.BYTES;
+        for (TopicPartition partition : offsets.keySet()) {
+            byte[] topic = partition.topic().getBytes(StandardCharsets.UTF_8);
+            topics.put(partition, topic);
+            offsetsSize += Integer.BYTES + topic.length + Integer.BYTES + Long.BYTES;
+        }
+
+        long size = Integer.BYTES + Integer.BYTES + Long.BYTES
+                + offsetsSize
+                + Long.BYTES + weightCount * (Long.BYTES * 3 + Double.BYTES)
+                + Long.BYTES + eventCount * (Long.BYTES + Double.BYTES)
+                + Long.BYTES + pairCount * (Long.BYTES * 2 + Double.BYTES)
+                + Long.BYTES;
+
+        try (MappedFileWriter writer = new MappedFileWriter(file, size)) {
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putLong(createdAt);
+
+            writer.putInt(offsets.size());
+            for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+                byte[] topic = topics.get(entry.getKey());
+                writer.putInt(topic.length);
+                writer.putBytes(topic);
+                writer.putInt(entry.getKey().partition());
+                writer.putLong(entry.getValue());
+            }
+
+            writer.putLong(weightCount);
+            for (WeightStore store : weightStores) {
+                store.forEachWeight((eventId, userId, weight) -> {
+                    try {
+                        writer.putLong(eventId);
+                        writer.putLong(userId);
+                        writer.putDouble(weight);
+                        writer.putLong(aggregationEngine.lastActionAt(eventId, userId));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+
+            writer.putLong(eventCount);
+            sumStore.forEachEventWeightSum((eventId, sum) -> {
+                try {
+                    writer.putLong(eventId);
+                    writer.putDouble(sum);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.putLong(pairCount);
+            sumStore.forEachMinWeightsSum((first, second, sum) -> {
+                try {
+                    writer.putLong(first);
+                    writer.putLong(second);
+                    writer.putDouble(sum);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.putLong(END_MARKER);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Map<TopicPartition, Long> load(Path file) throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            if (reader.getInt() != MAGIC) {
+                throw new IOException("Неподдерживаемый формат снимка");
+            }
+            int version = reader.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка " + version + ", ожидается " + VERSION);
+            }
+            // Время создания снимка: часы агрегатора, для вытеснения не годится
+            reader.getLong();
+
+            int partitions = reader.getInt();
+            Map<TopicPartition, Long> offsets = new HashMap<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                String topic = new String(reader.getBytes(reader.getInt()), StandardCharsets.UTF_8);
+                int partition = reader.getInt();
+                offsets.put(new TopicPartition(topic, partition), reader.getLong());
+            }
+
+            long weightCount = reader.getLong();
+            for (long i = 0; i < weightCount; i++) {
+                long eventId = reader.getLong();
+                long userId = reader.getLong();
+                double weight = reader.getDouble();
+                aggregationEngine.restoreWeight(eventId, userId, weight, reader.getLong());
+            }
+
+            long eventCount = reader.getLong();
+            for (long i = 0; i < eventCount; i++) {
+                long eventId = reader.getLong();
+                sumStore.addEventWeightSum(eventId, reader.getDouble());
+            }
+
+            long pairCount = reader.getLong();
+            for (long i = 0; i < pairCount; i++) {
+                long first = reader.getLong();
+                long second = reader.getLong();
+                sumStore.addMinWeightsSum(first, second, reader.getDouble());
+            }
+
+            if (reader.getLong() != END_MARKER) {
+                throw new IOException("Отсутствует маркер конца снимка");
+            }
+            return offsets;
+        }
+    }
+
+    private boolean isComplete(Path file) throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            long size = reader.size();
+            return size >= Integer.BYTES * 2 + Long.BYTES * 2
+                    && reader.getInt() == MAGIC
+                    && reader.getLongAt(size - Long.BYTES) == END_MARKER;
+        }
+    }
+
+    // Снимки от новых к старым
+    private List<Path> listSnapshots() {
+        Path directory = Paths.get(properties.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать каталог снимков {}", directory, e);
+        }
+        files.sort(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed());
+        return files;
+    }
+
+    private void removeOutdated() {
+        List<Path> files = listSnapshots();
+        for (int i = properties.getRetained(); i < files.size(); i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+                log.debug("Удалён устаревший снимок {}", files.get(i));
+            } catch (IOException e) {
+                log.warn("Не удалось удалить устаревший снимок {}", files.get(i), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Время последнего действия для пар (событие, пользователь) и очередь корзин для поиска устаревших пар.
+ * Время - это timestamp действий, а не часы агрегатора: водяной знак равен максимальному увиденному timestamp.
+ * Пара кладётся в корзину водяного знака; при разборе устаревшей корзины пары, тронутые позже, пропускаются,
+ * поэтому пара никогда не вытесняется раньше окна, но может задержаться на одну корзину. Не потокобезопасна.
+ */
+public class ActivityTracker {
+
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final long windowMillis;
+    private final long bucketMillis;
+
+    // (событие, пользователь) -> время последнего действия; миллисекунды эпохи точно представимы в double
+    private final LongPairDoubleHashMap lastActionAt = new LongPairDoubleHashMap();
+    private final ArrayDeque<Bucket> buckets = new ArrayDeque<>();
+    private long watermark = Long.MIN_VALUE;
+
+    public ActivityTracker(long windowMillis, long bucketMillis) {
+        if (windowMillis <= 0 || bucketMillis <= 0) {
+            throw new IllegalArgumentException("Окно и корзина должны быть положительными");
+        }
+        this.windowMillis = windowMillis;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public void touch(long eventId, long userId, long timestamp) {
+        watermark = Math.max(watermark, timestamp);
+        double previous = lastActionAt.get(eventId, userId, Double.NaN);
+        if (!Double.isNaN(previous) && previous >= timestamp) {
+            return;
+        }
+        lastActionAt.put(eventId, userId, timestamp);
+        long bucketStart = Math.floorDiv(watermark, bucketMillis) * bucketMillis;
+        if (!Double.isNaN(previous) && Math.floorDiv((long) previous, bucketMillis) * bucketMillis == bucketStart) {
+            return;
+        }
+        Bucket last = buckets.peekLast();
+        if (last == null || last.start != bucketStart) {
+            last = new Bucket(bucketStart);
+            buckets.addLast(last);
+        }
+        last.add(eventId, userId);
+    }
+
+    // Время последнего действия пары или {@link #UNKNOWN}, если пара не отслеживается
+    public long lastActionAt(long eventId, long userId) {
+        double timestamp = lastActionAt.get(eventId, userId, Double.NaN);
+        return Double.isNaN(timestamp) ? UNKNOWN : (long) timestamp;
+    }
+
+    public boolean hasExpired() {
+        Bucket first = buckets.peekFirst();
+        return first != null && first.start + bucketMillis <= cutoff();
+    }
+
+    // Удаляет пары без действий за окно и передаёт их consumer
+    public void expire(PairConsumer consumer) {
+        long cutoff = cutoff();
+        while (hasExpired()) {
+            Bucket bucket = buckets.pollFirst();
+            for (int i = 0; i < bucket.size; i += 2) {
+                long eventId = bucket.pairs[i];
+                long userId = bucket.pairs[i + 1];
+                double timestamp = lastActionAt.get(eventId, userId, Double.NaN);
+                if (!Double.isNaN(timestamp) && timestamp < cutoff) {
+                    lastActionAt.remove(eventId, userId);
+                    consumer.accept(eventId, userId);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return lastActionAt.size();
+    }
+
+    private long cutoff() {
+        return watermark == Long.MIN_VALUE ? Long.MIN_VALUE : watermark - windowMillis;
+    }
+
+    @FunctionalInterface
+    public interface PairConsumer {
+        void accept(long eventId, long userId);
+    }
+
+    private static final class Bucket {
+        private final long start;
+        // пары (событие, пользователь) подряд
+        private long[] pairs = new long[16];
+        private int size;
+
+        private Bucket(long start) {
+            this.start = start;
+        }
+
+        private void add(long eventId, long userId) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size << 1);
+            }
+            pairs[size++] = eventId;
+            pairs[size++] = userId;
+        }
+    }
+}
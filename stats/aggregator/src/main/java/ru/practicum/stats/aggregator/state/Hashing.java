@@ -0,0 +1,53 @@
+package ru.practicum.stats.aggregator.state;
+
+final class Hashing {
+
+    static final int MIN_CAPACITY = 16;
+    static final int MAX_CAPACITY = 1 << 30;
+    static final float LOAD_FACTOR = 0.75f;
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final long STRIPE_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+    private Hashing() {
+    }
+
+    static int hash(long key) {
+        long h = key * GOLDEN_RATIO;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    static int hash(long first, long second) {
+        return hash(first ^ Long.rotateLeft(second * GOLDEN_RATIO, 32));
+    }
+
+    // Хеш для выбора полосы: не зависит от hash(), чтобы ключи одной полосы не скучивались в её таблице
+    static int stripeHash(long key) {
+        return (int) ((key * STRIPE_MULTIPLIER) >>> 32);
+    }
+
+    static int stripeHash(long first, long second) {
+        return stripeHash(first * 31 + second);
+    }
+
+    // Минимальная степень двойки, при которой expectedSize элементов не превышают LOAD_FACTOR
+    static int capacityFor(int expectedSize) {
+        long required = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR);
+        if (required > MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int nextCapacity(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Превышен максимальный размер хеш-таблицы: " + capacity);
+        }
+        return capacity << 1;
+    }
+}
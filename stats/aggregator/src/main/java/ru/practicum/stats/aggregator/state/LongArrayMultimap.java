@@ -0,0 +1,169 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Отображение long -> список long на открытой адресации. Значения ключа лежат в растущем long[],
+ * порядок значений не гарантируется. Уникальность значений обеспечивает вызывающий код. Не потокобезопасна.
+ */
+public class LongArrayMultimap {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int INITIAL_VALUES_CAPACITY = 4;
+
+    private long[] keys;
+    private long[][] values;
+    private int[] counts;
+    private boolean[] used;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    public LongArrayMultimap() {
+        this(Hashing.MIN_CAPACITY);
+    }
+
+    public LongArrayMultimap(int expectedKeys) {
+        allocate(Hashing.capacityFor(expectedKeys));
+    }
+
+    // Количество ключей
+    public int size() {
+        return size;
+    }
+
+    public int count(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    public void add(long key, long value) {
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            keys[index] = key;
+            values[index] = new long[INITIAL_VALUES_CAPACITY];
+            counts[index] = 0;
+            used[index] = true;
+            size++;
+        }
+        long[] list = values[index];
+        int count = counts[index];
+        if (count == list.length) {
+            list = Arrays.copyOf(list, count << 1);
+            values[index] = list;
+        }
+        list[count] = value;
+        counts[index] = count + 1;
+        if (size > resizeThreshold) {
+            rehash(Hashing.nextCapacity(used.length));
+        }
+    }
+
+    // Удаляет значение у ключа; ключ без значений удаляется целиком
+    public boolean remove(long key, long value) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        long[] list = values[index];
+        int count = counts[index];
+        for (int i = 0; i < count; i++) {
+            if (list[i] == value) {
+                list[i] = list[count - 1];
+                counts[index] = count - 1;
+                if (count == 1) {
+                    removeAt(index);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void forEach(long key, LongConsumer consumer) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        long[] list = values[index];
+        int count = counts[index];
+        for (int i = 0; i < count; i++) {
+            consumer.accept(list[i]);
+        }
+    }
+
+    // Копия значений ключа: безопасна для обхода с одновременным изменением отображения
+    public long[] toArray(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? Arrays.copyOf(values[index], counts[index]) : EMPTY;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int indexOf(long key) {
+        int slot = Hashing.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void removeAt(int slot) {
+        int gap = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            if (!used[current]) {
+                break;
+            }
+            int ideal = Hashing.hash(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                counts[gap] = counts[current];
+                gap = current;
+            }
+        }
+        used[gap] = false;
+        values[gap] = null;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[][] oldValues = values;
+        int[] oldCounts = counts;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = Hashing.hash(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                counts[slot] = oldCounts[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity][];
+        counts = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * Hashing.LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,152 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица long -> double с открытой адресацией и линейным пробированием.
+ * Ключи и значения хранятся в примитивных массивах без упаковки. Не потокобезопасна.
+ */
+public class LongDoubleHashMap {
+
+    private long[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    public LongDoubleHashMap() {
+        this(Hashing.MIN_CAPACITY);
+    }
+
+    public LongDoubleHashMap(int expectedSize) {
+        allocate(Hashing.capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    public double get(long key, double defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(long key, double value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            insert(-index - 1, key, value);
+        }
+    }
+
+    // Прибавляет delta к значению (отсутствующий ключ считается нулём) и возвращает результат
+    public double addTo(long key, double delta) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] += delta;
+            return values[index];
+        }
+        insert(-index - 1, key, delta);
+        return delta;
+    }
+
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    // Индекс найденного ключа либо -(слот для вставки + 1)
+    private int indexOf(long key) {
+        int slot = Hashing.hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void insert(int slot, long key, double value) {
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            rehash(Hashing.nextCapacity(used.length));
+        }
+    }
+
+    // Удаление со сдвигом назад: цепочки пробирования остаются целыми без "надгробий"
+    private void removeAt(int slot) {
+        int gap = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            if (!used[current]) {
+                break;
+            }
+            int ideal = Hashing.hash(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+        }
+        used[gap] = false;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = Hashing.hash(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * Hashing.LOAD_FACTOR);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, double value);
+    }
+}
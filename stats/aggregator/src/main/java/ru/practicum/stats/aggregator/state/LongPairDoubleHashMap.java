@@ -0,0 +1,158 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица (long, long) -> double с открытой адресацией и линейным пробированием.
+ * Составной ключ хранится в двух параллельных массивах без создания объектов-пар. Не потокобезопасна.
+ */
+public class LongPairDoubleHashMap {
+
+    private long[] firstKeys;
+    private long[] secondKeys;
+    private double[] values;
+    private boolean[] used;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    public LongPairDoubleHashMap() {
+        this(Hashing.MIN_CAPACITY);
+    }
+
+    public LongPairDoubleHashMap(int expectedSize) {
+        allocate(Hashing.capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long first, long second) {
+        return indexOf(first, second) >= 0;
+    }
+
+    public double get(long first, long second, double defaultValue) {
+        int index = indexOf(first, second);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    // Возвращает true, если ключ добавлен впервые
+    public boolean put(long first, long second, double value) {
+        int index = indexOf(first, second);
+        if (index >= 0) {
+            values[index] = value;
+            return false;
+        }
+        insert(-index - 1, first, second, value);
+        return true;
+    }
+
+    // Прибавляет delta к значению (отсутствующий ключ считается нулём) и возвращает результат
+    public double addTo(long first, long second, double delta) {
+        int index = indexOf(first, second);
+        if (index >= 0) {
+            values[index] += delta;
+            return values[index];
+        }
+        insert(-index - 1, first, second, delta);
+        return delta;
+    }
+
+    public boolean remove(long first, long second) {
+        int index = indexOf(first, second);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                consumer.accept(firstKeys[i], secondKeys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int indexOf(long first, long second) {
+        int slot = Hashing.hash(first, second) & mask;
+        while (used[slot]) {
+            if (firstKeys[slot] == first && secondKeys[slot] == second) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void insert(int slot, long first, long second, double value) {
+        firstKeys[slot] = first;
+        secondKeys[slot] = second;
+        values[slot] = value;
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            rehash(Hashing.nextCapacity(used.length));
+        }
+    }
+
+    private void removeAt(int slot) {
+        int gap = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            if (!used[current]) {
+                break;
+            }
+            int ideal = Hashing.hash(firstKeys[current], secondKeys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                firstKeys[gap] = firstKeys[current];
+                secondKeys[gap] = secondKeys[current];
+                values[gap] = values[current];
+                gap = current;
+            }
+        }
+        used[gap] = false;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldFirstKeys = firstKeys;
+        long[] oldSecondKeys = secondKeys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = Hashing.hash(oldFirstKeys[i], oldSecondKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                firstKeys[slot] = oldFirstKeys[i];
+                secondKeys[slot] = oldSecondKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        firstKeys = new long[capacity];
+        secondKeys = new long[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * Hashing.LOAD_FACTOR);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long first, long second, double value);
+    }
+}
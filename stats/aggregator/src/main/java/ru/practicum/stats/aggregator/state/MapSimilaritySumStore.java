@@ -0,0 +1,70 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MapSimilaritySumStore implements SimilaritySumStore {
+
+    // суммы весов для каждого события
+    private final Map<Long, Double> eventWeightSums = new ConcurrentHashMap<>();
+
+    // Map<EventId1, Map<EventId2, MinWeightSum>> - сумма минимальных весов для пар мероприятий
+    private final Map<Long, Map<Long, Double>> minWeightsSums = new ConcurrentHashMap<>();
+
+    @Override
+    public double getEventWeightSum(long eventId) {
+        return eventWeightSums.getOrDefault(eventId, 0.0);
+    }
+
+    @Override
+    public double addEventWeightSum(long eventId, double delta) {
+        Double sum = eventWeightSums.merge(eventId, delta, MapSimilaritySumStore::sumOrRemove);
+        return (sum != null) ? sum : 0.0;
+    }
+
+    @Override
+    public double getMinWeightsSum(long first, long second) {
+        Map<Long, Double> pairSums = minWeightsSums.get(first);
+        return (pairSums != null) ? pairSums.getOrDefault(second, 0.0) : 0.0;
+    }
+
+    @Override
+    public double addMinWeightsSum(long first, long second, double delta) {
+        // compute держит блокировку ключа first, поэтому опустевшая вложенная карта удаляется атомарно
+        double[] result = new double[1];
+        minWeightsSums.compute(first, (k, pairSums) -> {
+            Map<Long, Double> sums = (pairSums != null) ? pairSums : new ConcurrentHashMap<>();
+            Double sum = sums.merge(second, delta, MapSimilaritySumStore::sumOrRemove);
+            result[0] = (sum != null) ? sum : 0.0;
+            return sums.isEmpty() ? null : sums;
+        });
+        return result[0];
+    }
+
+    // null удаляет нулевую сумму из отображения
+    private static Double sumOrRemove(Double current, Double delta) {
+        double sum = current + delta;
+        return (sum < ZERO_SUM) ? null : sum;
+    }
+
+    @Override
+    public int eventCount() {
+        return eventWeightSums.size();
+    }
+
+    @Override
+    public int pairCount() {
+        return minWeightsSums.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public void forEachEventWeightSum(EventSumConsumer consumer) {
+        eventWeightSums.forEach(consumer::accept);
+    }
+
+    @Override
+    public void forEachMinWeightsSum(PairSumConsumer consumer) {
+        minWeightsSums.forEach((first, sums) ->
+                sums.forEach((second, sum) -> consumer.accept(first, second, sum)));
+    }
+}
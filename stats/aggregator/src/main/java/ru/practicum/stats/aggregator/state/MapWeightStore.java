@@ -0,0 +1,63 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+public class MapWeightStore implements WeightStore {
+
+    // событие -> (пользователь -> максимальный вес)
+    private final Map<Long, Map<Long, Double>> eventUserMaxWeights = new ConcurrentHashMap<>();
+
+    // пользователь -> события, с которыми он взаимодействовал
+    private final Map<Long, Set<Long>> userEvents = new ConcurrentHashMap<>();
+
+    @Override
+    public double getWeight(long eventId, long userId) {
+        Map<Long, Double> weights = eventUserMaxWeights.get(eventId);
+        return (weights != null) ? weights.getOrDefault(userId, 0.0) : 0.0;
+    }
+
+    @Override
+    public void putWeight(long eventId, long userId, double weight) {
+        eventUserMaxWeights.computeIfAbsent(eventId, k -> new ConcurrentHashMap<>()).put(userId, weight);
+        userEvents.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(eventId);
+    }
+
+    @Override
+    public double removeWeight(long eventId, long userId) {
+        Map<Long, Double> weights = eventUserMaxWeights.get(eventId);
+        Double weight = (weights != null) ? weights.remove(userId) : null;
+        if (weight == null) {
+            return 0.0;
+        }
+        if (weights.isEmpty()) {
+            eventUserMaxWeights.remove(eventId);
+        }
+        Set<Long> events = userEvents.get(userId);
+        if (events != null && events.remove(eventId) && events.isEmpty()) {
+            userEvents.remove(userId);
+        }
+        return weight;
+    }
+
+    @Override
+    public void forEachUserEvent(long userId, LongConsumer consumer) {
+        for (long eventId : userEvents.getOrDefault(userId, Collections.emptySet())) {
+            consumer.accept(eventId);
+        }
+    }
+
+    @Override
+    public int size() {
+        return eventUserMaxWeights.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public void forEachWeight(WeightConsumer consumer) {
+        eventUserMaxWeights.forEach((eventId, weights) ->
+                weights.forEach((userId, weight) -> consumer.accept(eventId, userId, weight)));
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.stats.aggregator.state;
+
+/**
+ * Суммы S_A и S_min на примитивных хеш-таблицах. Рассчитано на одного писателя.
+ */
+public class PrimitiveSimilaritySumStore implements SimilaritySumStore {
+
+    private final LongDoubleHashMap eventWeightSums = new LongDoubleHashMap();
+
+    private final LongPairDoubleHashMap minWeightsSums = new LongPairDoubleHashMap();
+
+    @Override
+    public double getEventWeightSum(long eventId) {
+        return eventWeightSums.get(eventId, 0.0);
+    }
+
+    @Override
+    public double addEventWeightSum(long eventId, double delta) {
+        double sum = eventWeightSums.addTo(eventId, delta);
+        if (sum < ZERO_SUM) {
+            eventWeightSums.remove(eventId);
+            return 0.0;
+        }
+        return sum;
+    }
+
+    @Override
+    public double getMinWeightsSum(long first, long second) {
+        return minWeightsSums.get(first, second, 0.0);
+    }
+
+    @Override
+    public double addMinWeightsSum(long first, long second, double delta) {
+        double sum = minWeightsSums.addTo(first, second, delta);
+        if (sum < ZERO_SUM) {
+            minWeightsSums.remove(first, second);
+            return 0.0;
+        }
+        return sum;
+    }
+
+    @Override
+    public int eventCount() {
+        return eventWeightSums.size();
+    }
+
+    @Override
+    public int pairCount() {
+        return minWeightsSums.size();
+    }
+
+    @Override
+    public void forEachEventWeightSum(EventSumConsumer consumer) {
+        eventWeightSums.forEach(consumer::accept);
+    }
+
+    @Override
+    public void forEachMinWeightsSum(PairSumConsumer consumer) {
+        minWeightsSums.forEach(consumer::accept);
+    }
+}
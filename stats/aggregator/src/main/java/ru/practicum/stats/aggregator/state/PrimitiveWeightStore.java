@@ -0,0 +1,51 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище весов на примитивных хеш-таблицах. Рассчитано на одного писателя.
+ */
+public class PrimitiveWeightStore implements WeightStore {
+
+    // (событие, пользователь) -> максимальный вес
+    private final LongPairDoubleHashMap weights = new LongPairDoubleHashMap();
+
+    // пользователь -> события
+    private final LongArrayMultimap userEvents = new LongArrayMultimap();
+
+    @Override
+    public double getWeight(long eventId, long userId) {
+        return weights.get(eventId, userId, 0.0);
+    }
+
+    @Override
+    public void putWeight(long eventId, long userId, double weight) {
+        if (weights.put(eventId, userId, weight)) {
+            userEvents.add(userId, eventId);
+        }
+    }
+
+    @Override
+    public double removeWeight(long eventId, long userId) {
+        double weight = weights.get(eventId, userId, 0.0);
+        if (weights.remove(eventId, userId)) {
+            userEvents.remove(userId, eventId);
+        }
+        return weight;
+    }
+
+    @Override
+    public void forEachUserEvent(long userId, LongConsumer consumer) {
+        userEvents.forEach(userId, consumer);
+    }
+
+    @Override
+    public int size() {
+        return weights.size();
+    }
+
+    @Override
+    public void forEachWeight(WeightConsumer consumer) {
+        weights.forEach(consumer::accept);
+    }
+}
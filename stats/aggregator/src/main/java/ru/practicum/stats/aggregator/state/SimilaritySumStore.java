@@ -0,0 +1,40 @@
+package ru.practicum.stats.aggregator.state;
+
+/**
+ * Суммы весов по событиям (S_A) и суммы минимальных весов по парам событий (S_min).
+ * Пара всегда передаётся упорядоченной: first < second. Суммы, ставшие нулевыми после вытеснения весов,
+ * удаляются из хранилища.
+ */
+public interface SimilaritySumStore {
+
+    double getEventWeightSum(long eventId);
+
+    // Практически нулевая сумма: остаток ошибок округления после вычитания всех весов
+    double ZERO_SUM = 1e-9;
+
+    // Прибавляет delta к сумме весов события и возвращает новое значение
+    double addEventWeightSum(long eventId, double delta);
+
+    double getMinWeightsSum(long first, long second);
+
+    // Прибавляет delta к S_min пары и возвращает новое значение
+    double addMinWeightsSum(long first, long second, double delta);
+
+    int eventCount();
+
+    int pairCount();
+
+    void forEachEventWeightSum(EventSumConsumer consumer);
+
+    void forEachMinWeightsSum(PairSumConsumer consumer);
+
+    @FunctionalInterface
+    interface EventSumConsumer {
+        void accept(long eventId, double sum);
+    }
+
+    @FunctionalInterface
+    interface PairSumConsumer {
+        void accept(long first, long second, double sum);
+    }
+}
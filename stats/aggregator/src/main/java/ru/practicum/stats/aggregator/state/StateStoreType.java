@@ -0,0 +1,8 @@
+package ru.practicum.stats.aggregator.state;
+
+public enum StateStoreType {
+    // открытая адресация на примитивных массивах
+    PRIMITIVE,
+    // вложенные ConcurrentHashMap с упакованными ключами и значениями
+    MAP
+}
@@ -0,0 +1,29 @@
+package ru.practicum.stats.aggregator.state;
+
+public final class StateStores {
+
+    private StateStores() {
+    }
+
+    public static WeightStore newWeightStore(StateStoreType type) {
+        return switch (type) {
+            case PRIMITIVE -> new PrimitiveWeightStore();
+            case MAP -> new MapWeightStore();
+        };
+    }
+
+    public static SimilaritySumStore newSumStore(StateStoreType type) {
+        return switch (type) {
+            case PRIMITIVE -> new PrimitiveSimilaritySumStore();
+            case MAP -> new MapSimilaritySumStore();
+        };
+    }
+
+    // Хранилище сумм, которое можно разделять между потоками агрегации
+    public static SimilaritySumStore newConcurrentSumStore(StateStoreType type, int stripes) {
+        return switch (type) {
+            case PRIMITIVE -> new StripedSimilaritySumStore(stripes, PrimitiveSimilaritySumStore::new);
+            case MAP -> new MapSimilaritySumStore();
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасная обёртка над однопоточными хранилищами сумм: ключи распределены по полосам,
+ * каждая полоса защищена своей блокировкой. Суммы S_A и S_min аддитивны по пользователям,
+ * поэтому шарды агрегатора могут независимо прибавлять к ним свои приращения.
+ */
+public class StripedSimilaritySumStore implements SimilaritySumStore {
+
+    private final SimilaritySumStore[] stripes;
+    private final Object[] locks;
+    private final int mask;
+
+    public StripedSimilaritySumStore(int stripeCount, Supplier<SimilaritySumStore> stripeFactory) {
+        int capacity = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new SimilaritySumStore[capacity];
+        this.locks = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            stripes[i] = stripeFactory.get();
+            locks[i] = new Object();
+        }
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public double getEventWeightSum(long eventId) {
+        int stripe = Hashing.stripeHash(eventId) & mask;
+        synchronized (locks[stripe]) {
+            return stripes[stripe].getEventWeightSum(eventId);
+        }
+    }
+
+    @Override
+    public double addEventWeightSum(long eventId, double delta) {
+        int stripe = Hashing.stripeHash(eventId) & mask;
+        synchronized (locks[stripe]) {
+            return stripes[stripe].addEventWeightSum(eventId, delta);
+        }
+    }
+
+    @Override
+    public double getMinWeightsSum(long first, long second) {
+        int stripe = Hashing.stripeHash(first, second) & mask;
+        synchronized (locks[stripe]) {
+            return stripes[stripe].getMinWeightsSum(first, second);
+        }
+    }
+
+    @Override
+    public double addMinWeightsSum(long first, long second, double delta) {
+        int stripe = Hashing.stripeHash(first, second) & mask;
+        synchronized (locks[stripe]) {
+            return stripes[stripe].addMinWeightsSum(first, second, delta);
+        }
+    }
+
+    @Override
+    public int eventCount() {
+        int count = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (locks[i]) {
+                count += stripes[i].eventCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int pairCount() {
+        int count = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (locks[i]) {
+                count += stripes[i].pairCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void forEachEventWeightSum(EventSumConsumer consumer) {
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (locks[i]) {
+                stripes[i].forEachEventWeightSum(consumer);
+            }
+        }
+    }
+
+    @Override
+    public void forEachMinWeightsSum(PairSumConsumer consumer) {
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (locks[i]) {
+                stripes[i].forEachMinWeightsSum(consumer);
+            }
+        }
+    }
+}
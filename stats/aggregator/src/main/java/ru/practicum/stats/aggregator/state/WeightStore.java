@@ -0,0 +1,30 @@
+package ru.practicum.stats.aggregator.state;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Максимальные веса взаимодействий пользователей с событиями и обратный индекс пользователь -> события.
+ */
+public interface WeightStore {
+
+    // Вес пользователя для события либо 0.0, если взаимодействий не было
+    double getWeight(long eventId, long userId);
+
+    void putWeight(long eventId, long userId, double weight);
+
+    // Удаляет вес и возвращает его либо 0.0, если веса не было
+    double removeWeight(long eventId, long userId);
+
+    // Обходит события, для которых у пользователя есть вес
+    void forEachUserEvent(long userId, LongConsumer consumer);
+
+    // Количество пар (событие, пользователь) с весом
+    int size();
+
+    void forEachWeight(WeightConsumer consumer);
+
+    @FunctionalInterface
+    interface WeightConsumer {
+        void accept(long eventId, long userId, double weight);
+    }
+}
@@ -0,0 +1,185 @@
+package ru.practicum.stats.aggregator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.avro.EventNeighboursAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NeighbourIndexTest {
+
+    // K = 2, для события хранится до 4 кандидатов
+    private static final int K = 2;
+    private static final Instant T0 = Instant.ofEpochMilli(1_000);
+    private static final Instant T1 = Instant.ofEpochMilli(2_000);
+
+    private NeighbourIndex index;
+
+    @BeforeEach
+    void setUp() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getNeighbours().setEnabled(true);
+        properties.getNeighbours().setK(K);
+        index = new NeighbourIndex(properties, new SimpleMeterRegistry());
+        index.rebuild(consumer -> {
+        });
+    }
+
+    @Test
+    void publishesTopKOfBothEventsInDescendingOrder() {
+        index.update(List.of(
+                similarity(1, 2, 0.5, T0),
+                similarity(1, 3, 0.9, T0),
+                similarity(1, 4, 0.7, T0)));
+
+        Map<Long, EventNeighboursAvro> changed = index.drainChanged();
+
+        assertThat(changed.keySet()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(neighbours(changed.get(1L))).containsExactly("3:0.9", "4:0.7");
+        assertThat(neighbours(changed.get(2L))).containsExactly("1:0.5");
+        assertThat(changed.get(1L).getTimestamp()).isEqualTo(T0);
+    }
+
+    @Test
+    void fullListReplacesWeakestCandidateOnlyWithStrongerOne() {
+        fill(1, 0.9, 0.8, 0.7, 0.6);
+
+        // Сильнее минимума 0.6: вытесняет кандидата 5, первые K не меняются
+        index.update(List.of(similarity(1, 6, 0.65, T1)));
+        assertThat(index.drainChanged().keySet()).containsExactly(6L);
+
+        // Слабее нового минимума 0.65: не попадает в запас
+        index.update(List.of(similarity(1, 7, 0.5, T1)));
+        assertThat(index.drainChanged().keySet()).containsExactly(7L);
+
+        // Уход первых двух открывает запас: 4 и 6 остались, 5 и 7 нет
+        index.update(List.of(similarity(1, 2, 0, T1), similarity(1, 3, 0, T1)));
+        assertThat(neighbours(index.drainChanged().get(1L))).containsExactly("4:0.7", "6:0.65");
+    }
+
+    @Test
+    void neighbourDroppedToZeroIsRemovedAndReservePromoted() {
+        fill(1, 0.9, 0.8, 0.7);
+
+        index.update(List.of(similarity(1, 2, 0, T1)));
+        Map<Long, EventNeighboursAvro> changed = index.drainChanged();
+
+        assertThat(changed.keySet()).containsExactly(1L, 2L);
+        assertThat(neighbours(changed.get(1L))).containsExactly("3:0.8", "4:0.7");
+        assertThat(changed.get(1L).getTimestamp()).isEqualTo(T1);
+        // У события 2 не осталось похожих
+        assertThat(changed).containsEntry(2L, null);
+    }
+
+    @Test
+    void changeOutsideTopKIsNotPublished() {
+        fill(1, 0.9, 0.8, 0.7);
+
+        index.update(List.of(similarity(1, 4, 0.75, T1)));
+        assertThat(index.drainChanged().keySet()).containsExactly(4L);
+
+        index.update(List.of(similarity(1, 4, 0, T1)));
+        assertThat(index.drainChanged().keySet()).containsExactly(4L);
+    }
+
+    @Test
+    void reserveCandidateRisingIntoTopKIsPublished() {
+        fill(1, 0.9, 0.8, 0.7);
+
+        index.update(List.of(similarity(1, 4, 0.85, T1)));
+
+        assertThat(neighbours(index.drainChanged().get(1L))).containsExactly("2:0.9", "4:0.85");
+    }
+
+    @Test
+    void unchangedScoreIsNotPublished() {
+        fill(1, 0.9);
+
+        index.update(List.of(similarity(1, 2, 0.9, T1)));
+
+        assertThat(index.drainChanged()).isEmpty();
+    }
+
+    @Test
+    void drainChangedClearsPendingChangesAndKeepsLatestTimestamp() {
+        index.update(List.of(similarity(1, 2, 0.5, T0)));
+        index.update(List.of(similarity(1, 2, 0.6, T1)));
+
+        Map<Long, EventNeighboursAvro> changed = index.drainChanged();
+
+        assertThat(changed.get(1L).getTimestamp()).isEqualTo(T1);
+        assertThat(neighbours(changed.get(1L))).containsExactly("2:0.6");
+        assertThat(index.drainChanged()).isEmpty();
+    }
+
+    @Test
+    void publishesNothingUntilRebuiltThenTouchedEventsWithFullLists() {
+        AggregatorProperties properties = new AggregatorProperties();
+        properties.getNeighbours().setEnabled(true);
+        properties.getNeighbours().setK(K);
+        NeighbourIndex restarted = new NeighbourIndex(properties, new SimpleMeterRegistry());
+
+        // После перезапуска пересчитана одна пара: её список неполон и не публикуется
+        restarted.update(List.of(similarity(1, 2, 0.5, T1)));
+        assertThat(restarted.drainChanged()).isEmpty();
+
+        restarted.rebuild(consumer -> {
+            consumer.accept(1, 2, 0.5);
+            consumer.accept(1, 3, 0.9);
+            consumer.accept(3, 4, 0.7);
+            consumer.accept(1, 4, 0);
+        });
+        Map<Long, EventNeighboursAvro> changed = restarted.drainChanged();
+
+        assertThat(restarted.isRebuilt()).isTrue();
+        assertThat(changed.keySet()).containsExactly(1L, 2L);
+        assertThat(neighbours(changed.get(1L))).containsExactly("3:0.9", "2:0.5");
+        assertThat(neighbours(changed.get(2L))).containsExactly("1:0.5");
+        assertThat(changed.get(1L).getTimestamp()).isEqualTo(T1);
+
+        // Дальше списки обновляются по пересчитанным парам
+        restarted.update(List.of(similarity(3, 4, 0.95, T1)));
+        assertThat(neighbours(restarted.drainChanged().get(3L))).containsExactly("4:0.95", "1:0.9");
+    }
+
+    @Test
+    void disabledIndexIgnoresUpdates() {
+        AggregatorProperties properties = new AggregatorProperties();
+        NeighbourIndex disabled = new NeighbourIndex(properties, new SimpleMeterRegistry());
+
+        disabled.update(List.of(similarity(1, 2, 0.5, T0)));
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.drainChanged()).isEmpty();
+    }
+
+    // Соседи 2, 3, ... события eventId с заданными оценками; изменения сбрасываются
+    private void fill(long eventId, double... scores) {
+        for (int i = 0; i < scores.length; i++) {
+            index.update(List.of(similarity(eventId, eventId + i + 1, scores[i], T0)));
+        }
+        index.drainChanged();
+    }
+
+    private static EventSimilarityAvro similarity(long eventA, long eventB, double score, Instant timestamp) {
+        return EventSimilarityAvro.newBuilder()
+                .setEventA(eventA)
+                .setEventB(eventB)
+                .setScore(score)
+                .setTimestamp(timestamp)
+                .build();
+    }
+
+    private static List<String> neighbours(EventNeighboursAvro list) {
+        return list.getNeighbours().stream()
+                .map(neighbour -> neighbour.getEventId() + ":" + neighbour.getScore())
+                .toList();
+    }
+}
@@ -0,0 +1,163 @@
+package ru.practicum.stats.aggregator.snapshot;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.service.EventSimilarityService;
+import ru.practicum.stats.aggregator.service.SequentialAggregationEngine;
+import ru.practicum.stats.aggregator.state.SimilaritySumStore;
+import ru.practicum.stats.aggregator.state.StateStoreType;
+import ru.practicum.stats.aggregator.state.StateStores;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotManagerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("stats.user-actions.v1", 0);
+    private static final TopicPartition P1 = new TopicPartition("stats.user-actions.v1", 1);
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(StateStoreType.class)
+    void restoresWeightsSumsActionTimesAndOffsets(StateStoreType type) {
+        Aggregator source = new Aggregator(type);
+        source.act(1, 10, ActionTypeAvro.VIEW, 1_000);
+        source.act(1, 11, ActionTypeAvro.LIKE, 2_000);
+        source.act(2, 10, ActionTypeAvro.REGISTER, 3_000);
+        source.act(2, 11, ActionTypeAvro.VIEW, 4_000);
+        source.act(2, 12, ActionTypeAvro.LIKE, 5_000);
+        // Повтор с меньшим весом не меняет вес, но продлевает время действия
+        source.act(1, 10, ActionTypeAvro.VIEW, 6_000);
+        source.snapshots.snapshot(Map.of(P0, 42L, P1, 7L));
+
+        Aggregator restored = new Aggregator(type);
+        Map<TopicPartition, Long> offsets = restored.snapshots.restoreLatest();
+
+        assertThat(offsets).containsExactlyInAnyOrderEntriesOf(Map.of(P0, 42L, P1, 7L));
+        assertThat(restored.weights()).isEqualTo(source.weights()).hasSize(5);
+        assertThat(restored.eventSums()).isEqualTo(source.eventSums()).hasSize(3);
+        assertThat(restored.pairSums()).isEqualTo(source.pairSums()).hasSize(3);
+        assertThat(restored.engine.lastActionAt(10, 1)).isEqualTo(6_000);
+        assertThat(restored.engine.lastActionAt(12, 2)).isEqualTo(5_000);
+    }
+
+    @Test
+    void restoresNothingWithoutSnapshots() {
+        Aggregator restored = new Aggregator(StateStoreType.PRIMITIVE);
+
+        assertThat(restored.snapshots.restoreLatest()).isEmpty();
+        assertThat(restored.weights()).isEmpty();
+    }
+
+    @Test
+    void skipsUnfinishedSnapshotAndLoadsPreviousOne() throws IOException {
+        Aggregator source = new Aggregator(StateStoreType.PRIMITIVE);
+        source.act(1, 10, ActionTypeAvro.LIKE, 1_000);
+        source.snapshots.snapshot(Map.of(P0, 5L));
+        // Более свежий снимок без маркера конца, как после сбоя во время записи
+        Path complete = snapshotFile();
+        byte[] bytes = Files.readAllBytes(complete);
+        Files.write(dir.resolve("aggregator-9999999999999999999.snapshot"),
+                Arrays.copyOf(bytes, bytes.length - Long.BYTES));
+
+        Aggregator restored = new Aggregator(StateStoreType.PRIMITIVE);
+
+        assertThat(restored.snapshots.restoreLatest()).containsExactlyEntriesOf(Map.of(P0, 5L));
+        assertThat(restored.weights()).isEqualTo(source.weights());
+    }
+
+    @Test
+    void rejectsSnapshotOfUnknownVersion() throws IOException {
+        Aggregator source = new Aggregator(StateStoreType.PRIMITIVE);
+        source.act(1, 10, ActionTypeAvro.LIKE, 1_000);
+        source.snapshots.snapshot(Map.of(P0, 5L));
+        // Версия записана сразу после MAGIC; 1 - прежний формат без времени действия
+        try (FileChannel channel = FileChannel.open(snapshotFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1), Integer.BYTES);
+        }
+
+        Aggregator restored = new Aggregator(StateStoreType.PRIMITIVE);
+
+        assertThatThrownBy(restored.snapshots::restoreLatest)
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Неподдерживаемая версия снимка 1, ожидается 2");
+    }
+
+    private Path snapshotFile() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> snapshots = files.filter(path -> path.toString().endsWith(".snapshot")).toList();
+            assertThat(snapshots).hasSize(1);
+            return snapshots.get(0);
+        }
+    }
+
+    // Состояние агрегатора с вытеснением, чтобы в снимок попадало время действий
+    private class Aggregator {
+        private final WeightStore weightStore;
+        private final SimilaritySumStore sumStore;
+        private final EventSimilarityService service;
+        private final SequentialAggregationEngine engine;
+        private final SnapshotManager snapshots;
+
+        Aggregator(StateStoreType type) {
+            AggregatorProperties properties = new AggregatorProperties();
+            properties.getRetention().setEnabled(true);
+            properties.getSnapshot().setEnabled(true);
+            properties.getSnapshot().setDirectory(dir.toString());
+            weightStore = StateStores.newWeightStore(type);
+            sumStore = StateStores.newSumStore(type);
+            service = new EventSimilarityService(weightStore, sumStore, properties);
+            engine = new SequentialAggregationEngine(service);
+            snapshots = new SnapshotManager(properties, engine, sumStore);
+        }
+
+        void act(long userId, long eventId, ActionTypeAvro type, long timestamp) {
+            service.processUserAction(UserActionAvro.newBuilder()
+                    .setUserId(userId)
+                    .setEventId(eventId)
+                    .setActionType(type)
+                    .setTimestamp(Instant.ofEpochMilli(timestamp))
+                    .build());
+        }
+
+        Map<List<Long>, Double> weights() {
+            Map<List<Long>, Double> weights = new HashMap<>();
+            weightStore.forEachWeight((eventId, userId, weight) -> weights.put(List.of(eventId, userId), weight));
+            return weights;
+        }
+
+        Map<Long, Double> eventSums() {
+            Map<Long, Double> sums = new HashMap<>();
+            sumStore.forEachEventWeightSum(sums::put);
+            return sums;
+        }
+
+        Map<List<Long>, Double> pairSums() {
+            Map<List<Long>, Double> sums = new HashMap<>();
+            sumStore.forEachMinWeightsSum((first, second, sum) -> sums.put(List.of(first, second), sum));
+            return sums;
+        }
+    }
+}
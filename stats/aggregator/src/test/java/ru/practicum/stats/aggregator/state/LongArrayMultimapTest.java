@@ -0,0 +1,120 @@
+package ru.practicum.stats.aggregator.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongArrayMultimapTest {
+
+    @Test
+    void addGrowsValuesOfKey() {
+        LongArrayMultimap multimap = new LongArrayMultimap();
+
+        for (long value = 0; value < 10; value++) {
+            multimap.add(1, value);
+        }
+        multimap.add(2, 100);
+
+        assertThat(multimap.size()).isEqualTo(2);
+        assertThat(multimap.count(1)).isEqualTo(10);
+        assertThat(multimap.toArray(1)).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(multimap.toArray(2)).containsExactly(100);
+        assertThat(multimap.toArray(3)).isEmpty();
+    }
+
+    @Test
+    void removeDeletesValueAndKeyWithoutValues() {
+        LongArrayMultimap multimap = new LongArrayMultimap();
+        multimap.add(1, 10);
+        multimap.add(1, 20);
+
+        assertThat(multimap.remove(1, 30)).isFalse();
+        assertThat(multimap.remove(2, 10)).isFalse();
+        assertThat(multimap.remove(1, 10)).isTrue();
+        assertThat(multimap.toArray(1)).containsExactly(20);
+        assertThat(multimap.size()).isEqualTo(1);
+
+        assertThat(multimap.remove(1, 20)).isTrue();
+        assertThat(multimap.size()).isZero();
+        assertThat(multimap.count(1)).isZero();
+
+        multimap.add(1, 30);
+        assertThat(multimap.toArray(1)).containsExactly(30);
+    }
+
+    @Test
+    void keepsAllKeysAcrossResizes() {
+        LongArrayMultimap multimap = new LongArrayMultimap();
+
+        for (long key = 0; key < 5_000; key++) {
+            multimap.add(key, key);
+            multimap.add(key, -key);
+        }
+
+        assertThat(multimap.size()).isEqualTo(5_000);
+        for (long key = 0; key < 5_000; key++) {
+            assertThat(multimap.toArray(key)).containsExactlyInAnyOrder(key, -key);
+        }
+    }
+
+    @Test
+    void removingKeyInsideProbeChainKeepsFollowingKeysReachable() {
+        LongArrayMultimap multimap = new LongArrayMultimap();
+        long[] keys = collidingKeys(4);
+        for (long key : keys) {
+            multimap.add(key, key + 1);
+        }
+
+        assertThat(multimap.remove(keys[0], keys[0] + 1)).isTrue();
+
+        assertThat(multimap.size()).isEqualTo(3);
+        assertThat(multimap.count(keys[0])).isZero();
+        for (int i = 1; i < keys.length; i++) {
+            assertThat(multimap.toArray(keys[i])).containsExactly(keys[i] + 1);
+        }
+    }
+
+    @Test
+    void forEachVisitsValuesOfKey() {
+        LongArrayMultimap multimap = new LongArrayMultimap();
+        multimap.add(1, 10);
+        multimap.add(1, 20);
+        multimap.add(2, 30);
+        List<Long> visited = new ArrayList<>();
+
+        multimap.forEach(1, visited::add);
+        multimap.forEach(3, visited::add);
+
+        assertThat(visited).containsExactlyInAnyOrder(10L, 20L);
+    }
+
+    @Test
+    void clearRemovesAllKeys() {
+        LongArrayMultimap multimap = new LongArrayMultimap();
+        multimap.add(1, 10);
+        multimap.add(2, 20);
+
+        multimap.clear();
+
+        assertThat(multimap.size()).isZero();
+        assertThat(multimap.count(1)).isZero();
+        assertThat(multimap.toArray(2)).isEmpty();
+    }
+
+    // Ключи с одним исходным слотом в таблице минимальной ёмкости
+    private static long[] collidingKeys(int count) {
+        int mask = Hashing.MIN_CAPACITY - 1;
+        int slot = Hashing.hash(0L) & mask;
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 0; found < count; key++) {
+            if ((Hashing.hash(key) & mask) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,132 @@
+package ru.practicum.stats.aggregator.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongDoubleHashMapTest {
+
+    @Test
+    void putOverwritesAndGetReturnsDefaultForMissingKey() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+
+        map.put(1, 0.5);
+        map.put(1, 0.75);
+
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(1, -1)).isEqualTo(0.75);
+        assertThat(map.get(2, -1)).isEqualTo(-1.0);
+        assertThat(map.containsKey(2)).isFalse();
+    }
+
+    @Test
+    void addToTreatsMissingKeyAsZero() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+
+        assertThat(map.addTo(7, 1.5)).isEqualTo(1.5);
+        assertThat(map.addTo(7, 2.0)).isEqualTo(3.5);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removeDeletesOnlyPresentKey() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        map.put(1, 1.0);
+
+        assertThat(map.remove(2)).isFalse();
+        assertThat(map.remove(1)).isTrue();
+        assertThat(map.remove(1)).isFalse();
+        assertThat(map.size()).isZero();
+        assertThat(map.containsKey(1)).isFalse();
+    }
+
+    @Test
+    void keepsAllEntriesAcrossResizes() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        int count = 10_000;
+
+        for (int i = 0; i < count; i++) {
+            map.put(i * 31L, i);
+        }
+
+        assertThat(map.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(map.get(i * 31L, -1)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void removeInsideProbeChainKeepsFollowingKeysReachable() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        long[] keys = collidingKeys(4);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+
+        assertThat(map.remove(keys[1])).isTrue();
+
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.containsKey(keys[1])).isFalse();
+        assertThat(map.get(keys[0], -1)).isEqualTo(0.0);
+        assertThat(map.get(keys[2], -1)).isEqualTo(2.0);
+        assertThat(map.get(keys[3], -1)).isEqualTo(3.0);
+
+        map.put(keys[1], 10);
+        assertThat(map.get(keys[1], -1)).isEqualTo(10.0);
+        assertThat(map.size()).isEqualTo(4);
+    }
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        Map<Long, Double> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, (double) i);
+            } else {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key) != null);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        Map<Long, Double> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void clearRemovesAllEntries() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        map.put(1, 1.0);
+        map.put(2, 2.0);
+
+        map.clear();
+
+        assertThat(map.size()).isZero();
+        assertThat(map.containsKey(1)).isFalse();
+        map.put(1, 3.0);
+        assertThat(map.get(1, -1)).isEqualTo(3.0);
+    }
+
+    // Ключи с одним исходным слотом в таблице минимальной ёмкости
+    private static long[] collidingKeys(int count) {
+        int mask = Hashing.MIN_CAPACITY - 1;
+        int slot = Hashing.hash(0L) & mask;
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 0; found < count; key++) {
+            if ((Hashing.hash(key) & mask) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.stats.aggregator.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongPairDoubleHashMapTest {
+
+    @Test
+    void putReportsNewKeyAndDistinguishesKeyOrder() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap();
+
+        assertThat(map.put(1, 2, 0.5)).isTrue();
+        assertThat(map.put(1, 2, 0.75)).isFalse();
+        assertThat(map.put(2, 1, 0.25)).isTrue();
+
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.get(1, 2, -1)).isEqualTo(0.75);
+        assertThat(map.get(2, 1, -1)).isEqualTo(0.25);
+        assertThat(map.get(1, 3, -1)).isEqualTo(-1.0);
+    }
+
+    @Test
+    void addToTreatsMissingKeyAsZero() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap();
+
+        assertThat(map.addTo(1, 2, 1.5)).isEqualTo(1.5);
+        assertThat(map.addTo(1, 2, -0.5)).isEqualTo(1.0);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removeDeletesOnlyPresentKey() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap();
+        map.put(1, 2, 1.0);
+
+        assertThat(map.remove(2, 1)).isFalse();
+        assertThat(map.remove(1, 2)).isTrue();
+        assertThat(map.remove(1, 2)).isFalse();
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    void keepsAllEntriesAcrossResizes() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap();
+
+        for (int first = 0; first < 100; first++) {
+            for (int second = 0; second < 100; second++) {
+                map.put(first, second, first * 100 + second);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(10_000);
+        for (int first = 0; first < 100; first++) {
+            for (int second = 0; second < 100; second++) {
+                assertThat(map.get(first, second, -1)).isEqualTo(first * 100 + second);
+            }
+        }
+    }
+
+    @Test
+    void removeInsideProbeChainKeepsFollowingKeysReachable() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap();
+        long[] seconds = collidingSeconds(4);
+        for (int i = 0; i < seconds.length; i++) {
+            map.put(1, seconds[i], i);
+        }
+
+        assertThat(map.remove(1, seconds[0])).isTrue();
+
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.containsKey(1, seconds[0])).isFalse();
+        for (int i = 1; i < seconds.length; i++) {
+            assertThat(map.get(1, seconds[i], -1)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        LongPairDoubleHashMap map = new LongPairDoubleHashMap();
+        Map<String, Double> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long first = random.nextInt(50);
+            long second = random.nextInt(50);
+            String key = first + ":" + second;
+            if (random.nextBoolean()) {
+                assertThat(map.put(first, second, i)).isEqualTo(!expected.containsKey(key));
+                expected.put(key, (double) i);
+            } else {
+                assertThat(map.remove(first, second)).isEqualTo(expected.remove(key) != null);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        Map<String, Double> actual = new HashMap<>();
+        map.forEach((first, second, value) -> actual.put(first + ":" + second, value));
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    // Вторые ключи, которые с первым ключом 1 попадают в один исходный слот таблицы минимальной ёмкости
+    private static long[] collidingSeconds(int count) {
+        int mask = Hashing.MIN_CAPACITY - 1;
+        int slot = Hashing.hash(1L, 0L) & mask;
+        long[] seconds = new long[count];
+        int found = 0;
+        for (long second = 0; found < count; second++) {
+            if ((Hashing.hash(1L, second) & mask) == slot) {
+                seconds[found++] = second;
+            }
+        }
+        return seconds;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.stats.analyzer.index.SimilarityIndexUpdater;
 import ru.practicum.stats.analyzer.processor.EventSimilarityProcessor;
 import ru.practicum.stats.analyzer.processor.UserActionProcessor;
 
@@ -18,11 +19,16 @@ public class Analyzer {
 
         final UserActionProcessor userActionProcessor = context.getBean(UserActionProcessor.class);
         final EventSimilarityProcessor eventSimilarityProcessor = context.getBean(EventSimilarityProcessor.class);
+        final SimilarityIndexUpdater similarityIndexUpdater = context.getBean(SimilarityIndexUpdater.class);
 
         Thread userActionsThread = new Thread(userActionProcessor);
         userActionsThread.setName("UserActionHandlerThread");
         userActionsThread.start();
 
+        Thread similarityIndexThread = new Thread(similarityIndexUpdater);
+        similarityIndexThread.setName("SimilarityIndexThread");
+        similarityIndexThread.start();
+
         eventSimilarityProcessor.start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package ru.practicum.stats.analyzer.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Исполнитель с ограничением числа принятых, но ещё не завершённых задач: сверх maxPending задачи
+ * отклоняются RejectedExecutionException. Нужен для виртуальных потоков, у которых нет очереди с пределом.
+ */
+public class BoundedExecutor implements Executor {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    public BoundedExecutor(ExecutorService delegate, int maxPending) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("Превышено число одновременных задач");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
@@ -0,0 +1,40 @@
+package ru.practicum.stats.analyzer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class GrpcExecutorConfig {
+
+    /**
+     * Исполнитель подсчёта ответов RecommendationsController, чтобы запросы к БД не занимали потоки gRPC.
+     * threads = 0 - виртуальный поток на каждый вызов, больше 0 - пул из стольких потоков.
+     * Не больше maxPending вызовов ждут или считаются одновременно, остальные получают RESOURCE_EXHAUSTED.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public Executor recommendationsExecutor(@Value("${analyzer.grpc.executor-threads:0}") int threads,
+                                            @Value("${analyzer.grpc.max-pending-calls:1000}") int maxPending) {
+        if (threads <= 0) {
+            return new BoundedExecutor(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("recommendations-", 0).factory()),
+                    maxPending);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPending),
+                task -> {
+                    Thread thread = new Thread(task, "recommendations-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.stats.analyzer.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties("analyzer.recommendations")
+public class RecommendationsProperties {
+    // сколько последних взаимодействий пользователя участвует в подборе
+    private int recentInteractions = 20;
+    // сколько самых похожих событий берётся для каждого из них
+    private int neighboursPerEvent = 20;
+    private Cache cache = new Cache();
+
+    @Getter
+    @Setter
+    public static class Cache {
+        // сколько пользователей хранится в кеше рекомендаций, 0 - кеш отключён
+        private int maxUsers = 50_000;
+        // рекомендации устаревают и без новых действий пользователя: меняются сходства событий
+        private Duration ttl = Duration.ofMinutes(1);
+    }
+}
@@ -16,51 +16,31 @@ import ru.practicum.stats.analyzer.service.RecommendationsService;
 @RequiredArgsConstructor
 public class RecommendationsController extends RecommendationsControllerGrpc.RecommendationsControllerImplBase {
     private final RecommendationsService service;
+    private final ResponseStreamer streamer;
 
     @Override
     public void getRecommendationsForUser(UserPredictionsRequestProto request,
                                           StreamObserver<RecommendedEventProto> responseObserver) {
-        try {
-            log.info("GetRecommendationsForUser: userId={}, maxResults={}",
-                    request.getUserId(), request.getMaxResults());
+        log.info("GetRecommendationsForUser: userId={}, maxResults={}",
+                request.getUserId(), request.getMaxResults());
 
-            service.getRecommendationsForUser(request).forEach(responseObserver::onNext);
-            responseObserver.onCompleted();
-
-        } catch (Exception e) {
-            log.error("Error in GetRecommendationsForUser", e);
-            responseObserver.onError(e);
-        }
+        streamer.stream("GetRecommendationsForUser", responseObserver, () -> service.getRecommendationsForUser(request));
     }
 
     @Override
     public void getSimilarEvents(SimilarEventsRequestProto request,
                                  StreamObserver<RecommendedEventProto> responseObserver) {
-        try {
-            log.info("GetSimilarEvents: eventId={}, userId={}, maxResults={}",
-                    request.getEventId(), request.getUserId(), request.getMaxResults());
-
-            service.getSimilarEvents(request).forEach(responseObserver::onNext);
-            responseObserver.onCompleted();
+        log.info("GetSimilarEvents: eventId={}, userId={}, maxResults={}",
+                request.getEventId(), request.getUserId(), request.getMaxResults());
 
-        } catch (Exception e) {
-            log.error("Error in GetSimilarEvents", e);
-            responseObserver.onError(e);
-        }
+        streamer.stream("GetSimilarEvents", responseObserver, () -> service.getSimilarEvents(request));
     }
 
     @Override
     public void getInteractionsCount(InteractionsCountRequestProto request,
                                      StreamObserver<RecommendedEventProto> responseObserver) {
-        try {
-            log.info("GetInteractionsCount: eventIds={}", request.getEventIdList());
-
-            service.getInteractionsCount(request).forEach(responseObserver::onNext);
-            responseObserver.onCompleted();
+        log.info("GetInteractionsCount: eventIds={}", request.getEventIdList());
 
-        } catch (Exception e) {
-            log.error("Error in GetInteractionsCount", e);
-            responseObserver.onError(e);
-        }
+        streamer.stream("GetInteractionsCount", responseObserver, () -> service.getInteractionsCount(request));
     }
 }
@@ -0,0 +1,134 @@
+package ru.practicum.stats.analyzer.controller;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Отправка серверного потока gRPC с учётом готовности клиента.
+ * <p>
+ * Ответ считается в отдельном исполнителе (при analyzer.grpc.async = false - в потоке gRPC) и отдаётся,
+ * пока isReady() клиента: остальное досылается из обработчика onReady, поэтому медленный клиент
+ * не накапливает сообщения в буферах сервера. Истёкший дедлайн или отмена вызова прекращают работу
+ * до подсчёта и между сообщениями, а во время подсчёта - в точках проверки {@code Context.current()}
+ * в RecommendationScorer. Если исполнитель переполнен, вызов сразу получает RESOURCE_EXHAUSTED.
+ */
+@Slf4j
+@Component
+public class ResponseStreamer {
+
+    private final Executor executor;
+
+    public ResponseStreamer(@Value("${analyzer.grpc.async:true}") boolean async,
+                            @Qualifier("recommendationsExecutor") Executor recommendationsExecutor) {
+        this.executor = async ? recommendationsExecutor : Runnable::run;
+    }
+
+    public <T> void stream(String method, StreamObserver<T> responseObserver, Supplier<Stream<T>> source) {
+        ServerCallStreamObserver<T> observer = (ServerCallStreamObserver<T>) responseObserver;
+        Call<T> call = new Call<>(method, observer, Context.current().getDeadline());
+        // Обработчики можно назначить только до возврата из метода сервиса
+        observer.setOnCancelHandler(() -> log.debug("{}: вызов отменён клиентом", method));
+        observer.setOnReadyHandler(call::drain);
+        try {
+            executor.execute(Context.current().wrap(() -> call.compute(source)));
+        } catch (RejectedExecutionException e) {
+            call.fail(Status.RESOURCE_EXHAUSTED.withDescription("Сервер перегружен"));
+        }
+    }
+
+    private static final class Call<T> {
+        private final String method;
+        private final ServerCallStreamObserver<T> observer;
+        private final Deadline deadline;
+
+        private Iterator<T> items;
+        private boolean finished;
+
+        private Call(String method, ServerCallStreamObserver<T> observer, Deadline deadline) {
+            this.method = method;
+            this.observer = observer;
+            this.deadline = deadline;
+        }
+
+        private void compute(Supplier<Stream<T>> source) {
+            if (stopped()) {
+                return;
+            }
+            Iterator<T> computed;
+            try {
+                // Поток сервиса ленивый: собирается здесь, чтобы подсчёт не попал в поток gRPC из onReady
+                computed = source.get().toList().iterator();
+            } catch (StatusRuntimeException e) {
+                // Подсчёт прерван отменой или дедлайном вызова
+                log.warn("{}: подсчёт прерван: {}", method, e.getStatus());
+                fail(e.getStatus());
+                return;
+            } catch (Exception e) {
+                log.error("Error in {}", method, e);
+                fail(Status.INTERNAL.withDescription(e.getMessage()).withCause(e));
+                return;
+            }
+            synchronized (this) {
+                items = computed;
+            }
+            drain();
+        }
+
+        // Вызывается из исполнителя после подсчёта и из onReady; до подсчёта ничего не делает
+        private synchronized void drain() {
+            if (items == null || finished) {
+                return;
+            }
+            while (observer.isReady() && items.hasNext()) {
+                if (stopped()) {
+                    return;
+                }
+                observer.onNext(items.next());
+            }
+            if (!items.hasNext()) {
+                finished = true;
+                observer.onCompleted();
+            }
+        }
+
+        private synchronized boolean stopped() {
+            if (finished) {
+                return true;
+            }
+            if (observer.isCancelled()) {
+                finished = true;
+                return true;
+            }
+            if (deadline != null && deadline.isExpired()) {
+                log.warn("{}: истёк дедлайн вызова", method);
+                fail(Status.DEADLINE_EXCEEDED.withDescription("Истёк дедлайн " + method));
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized void fail(Status status) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (!observer.isCancelled()) {
+                observer.onError(status.asRuntimeException());
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.practicum.stats.analyzer.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Кеш сумм рейтингов событий для GetInteractionsCount: LRU не больше maxSize событий, запись живёт ttl.
+ * <p>
+ * UserActionProcessor прибавляет к закешированным суммам прирост каждого сохранённого пакета. Промахи читаются
+ * из БД и кладутся в кеш, только если за время чтения не было записи: иначе снимок чтения мог уже содержать
+ * пакет, прирост которого ещё не применён, и сумма посчиталась бы дважды. TTL ограничивает расхождение
+ * с действиями, которые сохранили другие экземпляры анализатора.
+ */
+@Component
+public class EventRatingCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries;
+
+    // Счётчик записей и признак незавершённого пакета, меняются под монитором кеша
+    private long version;
+    private boolean writing;
+
+    public EventRatingCache(@Value("${analyzer.rating-cache.max-size:100000}") int maxSize,
+                            @Value("${analyzer.rating-cache.ttl:5m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > EventRatingCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Суммы рейтингов событий; отсутствующие в кеше читаются одним запросом loader.
+     * События без взаимодействий получают 0.
+     */
+    public Map<Long, Double> getAll(Collection<Long> eventIds, Function<List<Long>, Map<Long, Double>> loader) {
+        Map<Long, Double> result = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        long observed;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Long eventId : eventIds) {
+                Entry entry = entries.get(eventId);
+                if (entry != null && now - entry.loadedAt < ttlNanos) {
+                    result.put(eventId, entry.sum);
+                } else {
+                    misses.add(eventId);
+                }
+            }
+            observed = writing ? -1 : version;
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Double> loaded = loader.apply(misses);
+        synchronized (this) {
+            boolean cacheable = observed >= 0 && !writing && version == observed && maxSize > 0;
+            long now = System.nanoTime();
+            for (Long eventId : misses) {
+                double sum = loaded.getOrDefault(eventId, 0.0);
+                result.put(eventId, sum);
+                if (cacheable) {
+                    entries.put(eventId, new Entry(sum, now));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Вызывается перед записью пакета в БД
+    public synchronized void beginUpdate() {
+        writing = true;
+        version++;
+    }
+
+    // Вызывается после фиксации пакета: прирост применяется только к закешированным событиям
+    public synchronized void applyDeltas(Map<Long, Double> deltas) {
+        deltas.forEach((eventId, delta) -> {
+            Entry entry = entries.get(eventId);
+            if (entry != null) {
+                entry.sum += delta;
+            }
+        });
+        writing = false;
+        version++;
+    }
+
+    // Сбрасывает записи, не затрагивая незавершённый пакет
+    public synchronized void clear() {
+        entries.clear();
+        version++;
+    }
+
+    // Вызывается, если запись пакета не удалась: неизвестно, что успело попасть в БД
+    public synchronized void invalidateAll() {
+        entries.clear();
+        writing = false;
+        version++;
+    }
+
+    private static final class Entry {
+        private double sum;
+        private final long loadedAt;
+
+        private Entry(double sum, long loadedAt) {
+            this.sum = sum;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.stats.analyzer.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.practicum.grpc.stats.recommendation.RecommendedEventProto;
+import ru.practicum.stats.analyzer.config.RecommendationsProperties;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Кеш рекомендаций пользователям по ключу (userId, maxResults): LRU не больше maxUsers пользователей,
+ * запись живёт ttl. UserActionProcessor сбрасывает записи пользователя после сохранения его действий.
+ * <p>
+ * Результат, посчитанный во время сброса, в кеш не кладётся: у каждой полосы пользователей есть счётчик сбросов,
+ * и запись сохраняется, только если счётчик не изменился с начала подсчёта.
+ */
+@Component
+public class RecommendationCache {
+
+    private static final int STRIPES = 1024;
+
+    private final int maxUsers;
+    private final long ttlNanos;
+    private final Map<Long, Map<Integer, Entry>> entries;
+    private final long[] invalidations = new long[STRIPES];
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public RecommendationCache(RecommendationsProperties properties, MeterRegistry meterRegistry) {
+        this.maxUsers = properties.getCache().getMaxUsers();
+        this.ttlNanos = properties.getCache().getTtl().toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Map<Integer, Entry>> eldest) {
+                return size() > maxUsers;
+            }
+        };
+        this.hitCounter = Counter.builder("analyzer.recommendations.cache.hits")
+                .description("Рекомендации, отданные из кеша")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("analyzer.recommendations.cache.misses")
+                .description("Рекомендации, посчитанные заново")
+                .register(meterRegistry);
+        Gauge.builder("analyzer.recommendations.cache.users", this, RecommendationCache::size)
+                .description("Пользователи с рекомендациями в кеше")
+                .register(meterRegistry);
+    }
+
+    public List<RecommendedEventProto> get(long userId, int maxResults, Supplier<List<RecommendedEventProto>> loader) {
+        if (maxUsers <= 0) {
+            return loader.get();
+        }
+        long observed;
+        synchronized (this) {
+            Map<Integer, Entry> userEntries = entries.get(userId);
+            Entry entry = (userEntries != null) ? userEntries.get(maxResults) : null;
+            if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+                hitCounter.increment();
+                return entry.recommendations;
+            }
+            observed = invalidations[stripe(userId)];
+        }
+
+        missCounter.increment();
+        List<RecommendedEventProto> recommendations = List.copyOf(loader.get());
+        synchronized (this) {
+            if (invalidations[stripe(userId)] == observed) {
+                entries.computeIfAbsent(userId, k -> new HashMap<>())
+                        .put(maxResults, new Entry(recommendations, System.nanoTime()));
+            }
+        }
+        return recommendations;
+    }
+
+    // Вызывается после фиксации действий пользователей
+    public synchronized void invalidate(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            invalidations[stripe(userId)]++;
+            entries.remove(userId);
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private static int stripe(long userId) {
+        return Long.hashCode(userId) & (STRIPES - 1);
+    }
+
+    private record Entry(List<RecommendedEventProto> recommendations, long loadedAt) {
+    }
+}
@@ -0,0 +1,192 @@
+package ru.practicum.stats.analyzer.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Граф сходств в памяти: событие -> похожие события по убыванию сходства.
+ * <p>
+ * Списки неизменяемы и заменяются целиком, поэтому читатели из потоков gRPC не блокируются.
+ * Пишет только поток {@link SimilarityIndexUpdater}: сначала граф загружается из БД, затем применяются сходства
+ * из всех партиций топика с перестройкой списка каждого затронутого события один раз на пакет.
+ * До окончания загрузки {@link #isReady()} возвращает false.
+ */
+@Slf4j
+@Component
+public class SimilarityIndex {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final boolean enabled;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Neighbours> neighbours = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    public SimilarityIndex(@Value("${analyzer.similarity-index.enabled:true}") boolean enabled,
+                           DataSource dataSource,
+                           PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Вызывается из SimilarityIndexUpdater до применения сходств из топика
+    public void load() {
+        long start = System.currentTimeMillis();
+        // Отдельный шаблон, чтобы размер выборки не влиял на остальные запросы
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE);
+        Map<Long, Builder> builders = new HashMap<>();
+        long[] rows = new long[1];
+        // Потоковое чтение курсором PostgreSQL возможно только внутри транзакции
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.query("SELECT event1, event2, similarity FROM similarities", rs -> {
+                long event1 = rs.getLong(1);
+                long event2 = rs.getLong(2);
+                double similarity = rs.getDouble(3);
+                builders.computeIfAbsent(event1, k -> new Builder()).add(event2, similarity);
+                builders.computeIfAbsent(event2, k -> new Builder()).add(event1, similarity);
+                rows[0]++;
+            });
+        });
+        builders.forEach((eventId, builder) -> neighbours.put(eventId, builder.build()));
+        ready = true;
+        log.info("Индекс сходств загружен за {} мс: пар={}, событий={}",
+                System.currentTimeMillis() - start, rows[0], neighbours.size());
+    }
+
+    // Применяет сходства пакета в порядке оффсетов: побеждает последняя оценка пары, нулевая удаляет пару
+    public void apply(List<EventSimilarityAvro> similarities) {
+        if (!ready) {
+            return;
+        }
+        Map<Long, Map<Long, Double>> changes = new HashMap<>();
+        for (EventSimilarityAvro similarity : similarities) {
+            long eventA = similarity.getEventA();
+            long eventB = similarity.getEventB();
+            changes.computeIfAbsent(eventA, k -> new HashMap<>()).put(eventB, similarity.getScore());
+            changes.computeIfAbsent(eventB, k -> new HashMap<>()).put(eventA, similarity.getScore());
+        }
+        changes.forEach((eventId, eventChanges) -> {
+            Neighbours updated = neighbours.getOrDefault(eventId, Neighbours.EMPTY).with(eventChanges);
+            if (updated.size() == 0) {
+                neighbours.remove(eventId);
+            } else {
+                neighbours.put(eventId, updated);
+            }
+        });
+    }
+
+    // Не больше limit похожих событий по убыванию сходства
+    public void forEachTop(long eventId, int limit, NeighbourConsumer consumer) {
+        Neighbours list = neighbours.getOrDefault(eventId, Neighbours.EMPTY);
+        int count = Math.min(limit, list.size());
+        for (int i = 0; i < count; i++) {
+            consumer.accept(list.ids[i], list.scores[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface NeighbourConsumer {
+        void accept(long eventId, double similarity);
+    }
+
+    private static final class Neighbours {
+        private static final Neighbours EMPTY = new Neighbours(new long[0], new double[0]);
+
+        private final long[] ids;
+        private final double[] scores;
+
+        private Neighbours(long[] ids, double[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        // Новый список: прежние соседи без изменённых, слитые с изменёнными ненулевыми
+        private Neighbours with(Map<Long, Double> changes) {
+            Builder added = new Builder();
+            changes.forEach((id, score) -> {
+                if (score > 0) {
+                    added.add(id, score);
+                }
+            });
+            Neighbours fresh = added.build();
+
+            long[] mergedIds = new long[ids.length + fresh.size()];
+            double[] mergedScores = new double[mergedIds.length];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < ids.length || j < fresh.size()) {
+                if (i < ids.length && changes.containsKey(ids[i])) {
+                    i++;
+                } else if (j >= fresh.size() || (i < ids.length && scores[i] >= fresh.scores[j])) {
+                    mergedIds[size] = ids[i];
+                    mergedScores[size++] = scores[i++];
+                } else {
+                    mergedIds[size] = fresh.ids[j];
+                    mergedScores[size++] = fresh.scores[j++];
+                }
+            }
+            return new Neighbours(Arrays.copyOf(mergedIds, size), Arrays.copyOf(mergedScores, size));
+        }
+    }
+
+    private static final class Builder {
+        private long[] ids = new long[8];
+        private double[] scores = new double[8];
+        private int size;
+
+        private void add(long id, double score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+                scores = Arrays.copyOf(scores, size << 1);
+            }
+            ids[size] = id;
+            scores[size++] = score;
+        }
+
+        // Сортировка по убыванию сходства
+        private Neighbours build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            long[] sortedIds = new long[size];
+            double[] sortedScores = new double[size];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = ids[order[i]];
+                sortedScores[i] = scores[order[i]];
+            }
+            return new Neighbours(sortedIds, sortedScores);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.stats.analyzer.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.stats.analyzer.config.KafkaConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Обновляет {@link SimilarityIndex} каждого экземпляра анализатора сходствами из всех партиций топика.
+ * <p>
+ * EventSimilarityProcessor делит партиции между экземплярами группы, поэтому индекс по его пакетам
+ * видел бы только свою часть сходств. Здесь партиции назначаются вручную, оффсеты не фиксируются:
+ * group.id совпадает с группой EventSimilarityProcessor и нужен только для чтения её оффсетов.
+ * Оффсеты читаются до загрузки графа из БД, поэтому пропуска между снимком БД и чтением топика нет,
+ * а повтор уже загруженных сходств безопасен. Партиции, добавленные в топик после старта, не читаются до рестарта.
+ */
+@Slf4j
+@Component
+public class SimilarityIndexUpdater implements Runnable {
+
+    private final KafkaConsumer<String, EventSimilarityAvro> consumer;
+    private final List<String> topics;
+    private final Duration pollTimeout;
+    private final SimilarityIndex similarityIndex;
+
+    public SimilarityIndexUpdater(KafkaConfig config, SimilarityIndex similarityIndex) {
+        final KafkaConfig.ConsumerConfig consumerConfig = config.getConsumers().get(this.getClass().getSimpleName());
+        this.consumer = new KafkaConsumer<>(consumerConfig.getProperties());
+        this.topics = consumerConfig.getTopics();
+        this.pollTimeout = consumerConfig.getPollTimeout();
+        this.similarityIndex = similarityIndex;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("ShutdownHook: Получен сигнал завершения работы обновления индекса сходств.");
+            consumer.wakeup();
+        }));
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!similarityIndex.isEnabled()) {
+                log.info("Индекс сходств отключён, похожие события читаются из БД");
+                return;
+            }
+            Set<TopicPartition> partitions = new HashSet<>();
+            for (String topic : topics) {
+                for (PartitionInfo info : consumer.partitionsFor(topic)) {
+                    partitions.add(new TopicPartition(topic, info.partition()));
+                }
+            }
+            consumer.assign(partitions);
+            // Всё до зафиксированных оффсетов группы уже сохранено в БД и попадёт в граф при загрузке
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(partitions);
+            similarityIndex.load();
+            List<TopicPartition> fromBeginning = new ArrayList<>();
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata offset = committed.get(partition);
+                if (offset != null) {
+                    consumer.seek(partition, offset);
+                } else {
+                    fromBeginning.add(partition);
+                }
+            }
+            consumer.seekToBeginning(fromBeginning);
+            log.info("Индекс сходств читает партиции {}", partitions);
+
+            while (true) {
+                ConsumerRecords<String, EventSimilarityAvro> records = consumer.poll(pollTimeout);
+                if (records.isEmpty()) {
+                    continue;
+                }
+                List<EventSimilarityAvro> similarities = new ArrayList<>(records.count());
+                for (ConsumerRecord<String, EventSimilarityAvro> record : records) {
+                    similarities.add(record.value());
+                }
+                similarityIndex.apply(similarities);
+            }
+        } catch (WakeupException ignores) {
+            log.info("WakeupException: Завершение обновления индекса сходств.");
+        } catch (Exception e) {
+            log.error("Критическая ошибка при обновлении индекса сходств", e);
+        } finally {
+            log.info("Закрытие консьюмера индекса сходств.");
+            consumer.close();
+        }
+    }
+}
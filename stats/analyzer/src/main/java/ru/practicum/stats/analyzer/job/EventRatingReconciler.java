@@ -0,0 +1,53 @@
+package ru.practicum.stats.analyzer.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.analyzer.index.EventRatingCache;
+import ru.practicum.stats.analyzer.repository.EventRatingRepository;
+
+/**
+ * Сверка таблицы event_rating с interactions: пересчёт всех сумм одним запросом. Запускается при старте,
+ * до консьюмеров, чтобы заполнить таблицу для уже накопленных взаимодействий, и затем по расписанию.
+ * На время пересчёта запись действий ждёт снятия блокировки таблицы.
+ */
+@Slf4j
+@Component
+public class EventRatingReconciler {
+
+    private final boolean onStartup;
+    private final EventRatingRepository eventRatingRepository;
+    private final EventRatingCache eventRatingCache;
+    private final TransactionTemplate transactionTemplate;
+
+    public EventRatingReconciler(@Value("${analyzer.event-rating.reconcile-on-startup:true}") boolean onStartup,
+                                 EventRatingRepository eventRatingRepository,
+                                 EventRatingCache eventRatingCache,
+                                 PlatformTransactionManager transactionManager) {
+        this.onStartup = onStartup;
+        this.eventRatingRepository = eventRatingRepository;
+        this.eventRatingCache = eventRatingCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (onStartup) {
+            reconcile();
+        }
+    }
+
+    @Scheduled(cron = "${analyzer.event-rating.reconcile-cron:0 0 4 * * *}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        Integer fixed = transactionTemplate.execute(status -> eventRatingRepository.rebuildFromInteractions());
+        // Закешированные суммы могли разойтись с исправленными
+        eventRatingCache.clear();
+        log.info("Сверка рейтингов событий за {} мс: исправлено строк={}", System.currentTimeMillis() - start, fixed);
+    }
+}
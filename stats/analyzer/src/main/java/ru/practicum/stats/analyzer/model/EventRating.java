@@ -0,0 +1,23 @@
+package ru.practicum.stats.analyzer.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "event_rating")
+public class EventRating {
+
+    @Id
+    @Column(name = "event_id")
+    private Long eventId;
+
+    // Сумма максимальных рейтингов пользователей по событию
+    @NotNull
+    @Column(name = "rating_sum", nullable = false)
+    private Double ratingSum;
+}
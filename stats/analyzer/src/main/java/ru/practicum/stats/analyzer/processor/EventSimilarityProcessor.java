@@ -13,6 +13,7 @@ import ru.practicum.stats.analyzer.config.KafkaConfig;
 import ru.practicum.stats.analyzer.service.SimilarityService;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,15 +46,22 @@ public class EventSimilarityProcessor {
             consumer.subscribe(topics);
             while (true) {
                 ConsumerRecords<String, EventSimilarityAvro> records = consumer.poll(pollTimeout);
-                int count = 0;
+                if (records.isEmpty()) {
+                    continue;
+                }
+                // Весь poll сохраняется одной транзакцией, после неё фиксируются оффсеты
+                List<EventSimilarityAvro> similarities = new ArrayList<>(records.count());
                 for (ConsumerRecord<String, EventSimilarityAvro> record : records) {
                     log.trace("Обработка сообщения: топик={}, партиция={}, offset={}, key={}",
                             record.topic(), record.partition(), record.offset(), record.key());
-                    similarityService.handle(record.value());
-                    manageOffsets(record, count, consumer);
-                    count++;
+                    similarities.add(record.value());
+                }
+                similarityService.handleBatch(similarities);
+                for (ConsumerRecord<String, EventSimilarityAvro> record : records) {
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
                 }
-                consumer.commitAsync();
+                commitOffsets();
             }
         } catch (WakeupException ignores) {
             log.info("WakeupException: Завершение работы.");
@@ -69,19 +77,12 @@ public class EventSimilarityProcessor {
         }
     }
 
-    private void manageOffsets(ConsumerRecord<String, EventSimilarityAvro> record, int count,
-                               KafkaConsumer<String, EventSimilarityAvro> consumer) {
-        offsets.put(
-                new TopicPartition(record.topic(), record.partition()),
-                new OffsetAndMetadata(record.offset() + 1)
-        );
-        if (count % 100 == 0) {
-            consumer.commitAsync(offsets, (committedOffsets, exception) -> {
-                if (exception != null) {
-                    log.warn("Ошибка во время фиксации оффсетов: {}.", committedOffsets, exception);
-                }
-            });
-        }
+    private void commitOffsets() {
+        consumer.commitAsync(new HashMap<>(offsets), (committedOffsets, exception) -> {
+            if (exception != null) {
+                log.warn("Ошибка во время фиксации оффсетов: {}.", committedOffsets, exception);
+            }
+        });
     }
 }
 
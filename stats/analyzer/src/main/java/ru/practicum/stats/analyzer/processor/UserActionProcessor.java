@@ -10,12 +10,17 @@ import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.stereotype.Component;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 import ru.practicum.stats.analyzer.config.KafkaConfig;
+import ru.practicum.stats.analyzer.index.EventRatingCache;
+import ru.practicum.stats.analyzer.index.RecommendationCache;
 import ru.practicum.stats.analyzer.service.UserActionService;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 @Slf4j
@@ -26,13 +31,18 @@ public class UserActionProcessor implements Runnable {
     private final List<String> topics;
     private final Duration pollTimeout;
     private final UserActionService userActionService;
+    private final EventRatingCache eventRatingCache;
+    private final RecommendationCache recommendationCache;
 
-    public UserActionProcessor(KafkaConfig config, UserActionService userActionService) {
+    public UserActionProcessor(KafkaConfig config, UserActionService userActionService,
+                               EventRatingCache eventRatingCache, RecommendationCache recommendationCache) {
         final KafkaConfig.ConsumerConfig consumerConfig = config.getConsumers().get(this.getClass().getSimpleName());
         this.consumer = new KafkaConsumer<>(consumerConfig.getProperties());
         this.topics = consumerConfig.getTopics();
         this.pollTimeout = consumerConfig.getPollTimeout();
         this.userActionService = userActionService;
+        this.eventRatingCache = eventRatingCache;
+        this.recommendationCache = recommendationCache;
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             log.info("ShutdownHook: Получен сигнал завершения работы консьюмера.");
@@ -47,15 +57,22 @@ public class UserActionProcessor implements Runnable {
             consumer.subscribe(topics);
             while (true) {
                 ConsumerRecords<String, UserActionAvro> records = consumer.poll(pollTimeout);
-                int count = 0;
+                if (records.isEmpty()) {
+                    continue;
+                }
+                // Весь poll сохраняется одной транзакцией, после неё фиксируются оффсеты
+                List<UserActionAvro> actions = new ArrayList<>(records.count());
                 for (ConsumerRecord<String, UserActionAvro> record : records) {
                     log.trace("Обработка сообщения: топик={}, партиция={}, offset={}, key={}",
                             record.topic(), record.partition(), record.offset(), record.key());
-                    userActionService.handle(record.value());
-                    manageOffsets(record, count, consumer);
-                    count++;
+                    actions.add(record.value());
+                }
+                saveBatch(actions);
+                for (ConsumerRecord<String, UserActionAvro> record : records) {
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
                 }
-                consumer.commitAsync();
+                commitOffsets();
             }
         } catch (WakeupException ignores) {
             log.info("WakeupException: Завершение работы.");
@@ -71,18 +88,31 @@ public class UserActionProcessor implements Runnable {
         }
     }
 
-    private void manageOffsets(ConsumerRecord<String, UserActionAvro> record, int count,
-                               KafkaConsumer<String, UserActionAvro> consumer) {
-        offsets.put(
-                new TopicPartition(record.topic(), record.partition()),
-                new OffsetAndMetadata(record.offset() + 1)
-        );
-        if (count % 100 == 0) {
-            consumer.commitAsync(offsets, (committedOffsets, exception) -> {
-                if (exception != null) {
-                    log.warn("Ошибка во время фиксации оффсетов: {}.", committedOffsets, exception);
-                }
-            });
+    // Кеши обновляются после фиксации транзакции: суммы рейтингов - приростом пакета,
+    // рекомендации пользователей пакета сбрасываются
+    private void saveBatch(List<UserActionAvro> actions) {
+        eventRatingCache.beginUpdate();
+        Map<Long, Double> deltas;
+        try {
+            deltas = userActionService.handleBatch(actions);
+        } catch (RuntimeException e) {
+            eventRatingCache.invalidateAll();
+            throw e;
         }
+        eventRatingCache.applyDeltas(deltas);
+
+        Set<Long> userIds = new HashSet<>();
+        for (UserActionAvro action : actions) {
+            userIds.add(action.getUserId());
+        }
+        recommendationCache.invalidate(userIds);
+    }
+
+    private void commitOffsets() {
+        consumer.commitAsync(new HashMap<>(offsets), (committedOffsets, exception) -> {
+            if (exception != null) {
+                log.warn("Ошибка во время фиксации оффсетов: {}.", committedOffsets, exception);
+            }
+        });
     }
 }
\ No newline at end of file
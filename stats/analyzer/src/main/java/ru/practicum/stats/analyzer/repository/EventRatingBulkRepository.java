@@ -0,0 +1,12 @@
+package ru.practicum.stats.analyzer.repository;
+
+import java.util.Map;
+
+public interface EventRatingBulkRepository {
+
+    // Прибавляет прирост к суммам рейтингов событий, создавая недостающие строки
+    void addRatings(Map<Long, Double> deltas);
+
+    // Пересчитывает все суммы по таблице interactions, возвращает число исправленных строк
+    int rebuildFromInteractions();
+}
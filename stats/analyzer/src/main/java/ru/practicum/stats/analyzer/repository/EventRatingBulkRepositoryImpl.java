@@ -0,0 +1,76 @@
+package ru.practicum.stats.analyzer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Пакетное обновление таблицы event_rating. Строки меняются в порядке event_id, чтобы параллельные
+ * транзакции не взаимоблокировались.
+ * <p>
+ * Пересчёт берёт блокировку SHARE ROW EXCLUSIVE: она дожидается начатых записей и не пускает новые до конца
+ * транзакции, поэтому снимок interactions согласован с таблицей и прирост не теряется.
+ */
+@RequiredArgsConstructor
+public class EventRatingBulkRepositoryImpl implements EventRatingBulkRepository {
+
+    // 2 параметра на строку
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String INSERT = "INSERT INTO event_rating (event_id, rating_sum) VALUES ";
+    private static final String ROW = "(?::bigint, ?::double precision)";
+    private static final String ON_CONFLICT = " ON CONFLICT (event_id) DO UPDATE SET "
+            + "rating_sum = event_rating.rating_sum + EXCLUDED.rating_sum";
+
+    private static final String LOCK = "LOCK TABLE event_rating IN SHARE ROW EXCLUSIVE MODE";
+    private static final String REBUILD = "INSERT INTO event_rating (event_id, rating_sum) "
+            + "SELECT event_id, SUM(rating) FROM interactions GROUP BY event_id "
+            + "ON CONFLICT (event_id) DO UPDATE SET rating_sum = EXCLUDED.rating_sum "
+            + "WHERE event_rating.rating_sum IS DISTINCT FROM EXCLUDED.rating_sum";
+    private static final String DELETE_ORPHANS = "DELETE FROM event_rating e "
+            + "WHERE NOT EXISTS (SELECT 1 FROM interactions i WHERE i.event_id = e.event_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void addRatings(Map<Long, Double> deltas) {
+        List<Map.Entry<Long, Double>> chunk = new ArrayList<>(Math.min(deltas.size(), CHUNK_SIZE));
+        for (Map.Entry<Long, Double> delta : new TreeMap<>(deltas).entrySet()) {
+            chunk.add(delta);
+            if (chunk.size() == CHUNK_SIZE) {
+                add(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            add(chunk);
+        }
+    }
+
+    @Override
+    public int rebuildFromInteractions() {
+        jdbcTemplate.execute(LOCK);
+        return jdbcTemplate.update(REBUILD) + jdbcTemplate.update(DELETE_ORPHANS);
+    }
+
+    private void add(List<Map.Entry<Long, Double>> chunk) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + chunk.size() * (ROW.length() + 2) + ON_CONFLICT.length());
+        sql.append(INSERT);
+        Object[] args = new Object[chunk.size() * 2];
+        int i = 0;
+        for (Map.Entry<Long, Double> delta : chunk) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+            args[i++] = delta.getKey();
+            args[i++] = delta.getValue();
+        }
+        sql.append(ON_CONFLICT);
+        jdbcTemplate.update(sql.toString(), args);
+    }
+}
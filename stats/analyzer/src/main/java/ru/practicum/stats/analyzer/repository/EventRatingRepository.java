@@ -0,0 +1,7 @@
+package ru.practicum.stats.analyzer.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.practicum.stats.analyzer.model.EventRating;
+
+public interface EventRatingRepository extends JpaRepository<EventRating, Long>, EventRatingBulkRepository {
+}
@@ -0,0 +1,13 @@
+package ru.practicum.stats.analyzer.repository;
+
+import ru.practicum.stats.analyzer.model.Interaction;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface InteractionBulkRepository {
+
+    // Вставляет взаимодействия или поднимает рейтинг существующих; пара (userId, eventId) в наборе должна быть уникальна.
+    // Возвращает ненулевой прирост суммы рейтингов по событиям
+    Map<Long, Double> upsertMaxRating(Collection<Interaction> interactions);
+}
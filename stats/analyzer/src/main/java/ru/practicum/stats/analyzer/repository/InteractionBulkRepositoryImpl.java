@@ -0,0 +1,85 @@
+package ru.practicum.stats.analyzer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.stats.analyzer.model.Interaction;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная запись взаимодействий одним многострочным INSERT ... ON CONFLICT на каждые CHUNK_SIZE строк.
+ * Опирается на уникальность (user_id, event_id) в таблице interactions. Время обновляется только вместе
+ * с рейтингом, как при поштучной записи.
+ * <p>
+ * Прежние рейтинги читаются в том же запросе: все части WITH видят один снимок, поэтому previous содержит
+ * строки до вставки, и запрос сразу возвращает прирост суммы рейтингов по событиям.
+ */
+@RequiredArgsConstructor
+public class InteractionBulkRepositoryImpl implements InteractionBulkRepository {
+
+    // 4 параметра на строку, PostgreSQL допускает не больше 65535 параметров в запросе
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String WITH_BATCH = "WITH batch (user_id, event_id, rating, ts) AS (VALUES ";
+    private static final String ROW = "(?::bigint, ?::bigint, ?::double precision, ?::timestamptz)";
+    private static final String UPSERT = "), "
+            + "previous AS (SELECT i.user_id, i.event_id, i.rating FROM interactions i "
+            + "JOIN batch USING (user_id, event_id)), "
+            + "upserted AS (INSERT INTO interactions (user_id, event_id, rating, ts) "
+            + "SELECT user_id, event_id, rating, ts FROM batch "
+            + "ON CONFLICT (user_id, event_id) DO UPDATE SET "
+            + "rating = GREATEST(interactions.rating, EXCLUDED.rating), "
+            + "ts = CASE WHEN EXCLUDED.rating > interactions.rating THEN EXCLUDED.ts ELSE interactions.ts END "
+            + "RETURNING user_id, event_id, rating) "
+            + "SELECT u.event_id, SUM(u.rating - COALESCE(p.rating, 0)) FROM upserted u "
+            + "LEFT JOIN previous p USING (user_id, event_id) GROUP BY u.event_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Map<Long, Double> upsertMaxRating(Collection<Interaction> interactions) {
+        Map<Long, Double> deltas = new HashMap<>();
+        List<Interaction> chunk = new ArrayList<>(Math.min(interactions.size(), CHUNK_SIZE));
+        for (Interaction interaction : interactions) {
+            chunk.add(interaction);
+            if (chunk.size() == CHUNK_SIZE) {
+                upsert(chunk, deltas);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            upsert(chunk, deltas);
+        }
+        return deltas;
+    }
+
+    private void upsert(List<Interaction> chunk, Map<Long, Double> deltas) {
+        StringBuilder sql = new StringBuilder(WITH_BATCH.length() + chunk.size() * (ROW.length() + 2) + UPSERT.length());
+        sql.append(WITH_BATCH);
+        Object[] args = new Object[chunk.size() * 4];
+        int i = 0;
+        for (Interaction interaction : chunk) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+            args[i++] = interaction.getUserId();
+            args[i++] = interaction.getEventId();
+            args[i++] = interaction.getRating();
+            args[i++] = OffsetDateTime.ofInstant(interaction.getTimestamp(), ZoneOffset.UTC);
+        }
+        sql.append(UPSERT);
+        jdbcTemplate.query(sql.toString(), rs -> {
+            double delta = rs.getDouble(2);
+            if (delta != 0) {
+                deltas.merge(rs.getLong(1), delta, Double::sum);
+            }
+        }, args);
+    }
+}
@@ -5,10 +5,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.practicum.stats.analyzer.model.Interaction;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface InteractionRepository extends JpaRepository<Interaction, Long> {
+public interface InteractionRepository extends JpaRepository<Interaction, Long>, InteractionBulkRepository {
 
     Optional<Interaction> findByUserIdAndEventId(long userId, long eventId);
 
@@ -17,4 +18,11 @@ public interface InteractionRepository extends JpaRepository<Interaction, Long>
 
     @Query("SELECT i FROM Interaction i WHERE i.userId = :userId ORDER BY i.timestamp DESC")
     List<Interaction> findByUserIdOrderByTimestampDesc(@Param("userId") Long userId);
+
+    @Query("SELECT i FROM Interaction i WHERE i.userId = :userId ORDER BY i.timestamp DESC LIMIT :limit")
+    List<Interaction> findRecentByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Query("SELECT i FROM Interaction i WHERE i.userId = :userId AND i.eventId IN :eventIds")
+    List<Interaction> findByUserIdAndEventIdIn(@Param("userId") Long userId,
+                                               @Param("eventIds") Collection<Long> eventIds);
 }
@@ -0,0 +1,14 @@
+package ru.practicum.stats.analyzer.repository;
+
+import ru.practicum.stats.analyzer.model.EventSimilarity;
+
+import java.util.Collection;
+
+public interface SimilarityBulkRepository {
+
+    // Вставляет или обновляет сходства; пара (event1, event2) в наборе должна быть уникальна
+    void upsertSimilarities(Collection<EventSimilarity> similarities);
+
+    // Удаляет сходства пар; у каждого элемента используются только event1 и event2
+    void deleteSimilarities(Collection<EventSimilarity> similarities);
+}
@@ -0,0 +1,85 @@
+package ru.practicum.stats.analyzer.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.stats.analyzer.model.EventSimilarity;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Пакетная запись сходств многострочными запросами по CHUNK_SIZE строк. Опирается на уникальность
+ * (event1, event2) в таблице similarities. Строка с теми же сходством и временем не перезаписывается,
+ * чтобы не плодить версии строк.
+ */
+@RequiredArgsConstructor
+public class SimilarityBulkRepositoryImpl implements SimilarityBulkRepository {
+
+    // 4 параметра на строку, PostgreSQL допускает не больше 65535 параметров в запросе
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String INSERT = "INSERT INTO similarities (event1, event2, similarity, ts) VALUES ";
+    private static final String ON_CONFLICT = " ON CONFLICT (event1, event2) DO UPDATE SET "
+            + "similarity = EXCLUDED.similarity, ts = EXCLUDED.ts "
+            + "WHERE similarities.similarity IS DISTINCT FROM EXCLUDED.similarity "
+            + "OR similarities.ts IS DISTINCT FROM EXCLUDED.ts";
+    private static final String DELETE = "DELETE FROM similarities WHERE (event1, event2) IN (";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertSimilarities(Collection<EventSimilarity> similarities) {
+        inChunks(similarities, this::upsert);
+    }
+
+    @Override
+    public void deleteSimilarities(Collection<EventSimilarity> similarities) {
+        inChunks(similarities, this::delete);
+    }
+
+    private void upsert(List<EventSimilarity> chunk) {
+        StringBuilder sql = new StringBuilder(INSERT);
+        Object[] args = new Object[chunk.size() * 4];
+        int i = 0;
+        for (EventSimilarity similarity : chunk) {
+            sql.append(i > 0 ? ", (?, ?, ?, ?)" : "(?, ?, ?, ?)");
+            args[i++] = similarity.getEvent1();
+            args[i++] = similarity.getEvent2();
+            args[i++] = similarity.getSimilarity();
+            args[i++] = OffsetDateTime.ofInstant(similarity.getTimestamp(), ZoneOffset.UTC);
+        }
+        sql.append(ON_CONFLICT);
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private void delete(List<EventSimilarity> chunk) {
+        StringBuilder sql = new StringBuilder(DELETE);
+        Object[] args = new Object[chunk.size() * 2];
+        int i = 0;
+        for (EventSimilarity similarity : chunk) {
+            sql.append(i > 0 ? ", (?, ?)" : "(?, ?)");
+            args[i++] = similarity.getEvent1();
+            args[i++] = similarity.getEvent2();
+        }
+        sql.append(')');
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private static void inChunks(Collection<EventSimilarity> similarities, Consumer<List<EventSimilarity>> writer) {
+        List<EventSimilarity> chunk = new ArrayList<>(Math.min(similarities.size(), CHUNK_SIZE));
+        for (EventSimilarity similarity : similarities) {
+            chunk.add(similarity);
+            if (chunk.size() == CHUNK_SIZE) {
+                writer.accept(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writer.accept(chunk);
+        }
+    }
+}
@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
-public interface SimilarityRepository extends JpaRepository<EventSimilarity, Long> {
+public interface SimilarityRepository extends JpaRepository<EventSimilarity, Long>, SimilarityBulkRepository {
 
     Optional<EventSimilarity> findByEvent1AndEvent2(Long event1, Long event2);
 
@@ -0,0 +1,195 @@
+package ru.practicum.stats.analyzer.scoring;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.grpc.stats.recommendation.RecommendedEventProto;
+import ru.practicum.stats.analyzer.config.RecommendationsProperties;
+import ru.practicum.stats.analyzer.index.SimilarityIndex;
+import ru.practicum.stats.analyzer.model.EventSimilarity;
+import ru.practicum.stats.analyzer.model.Interaction;
+import ru.practicum.stats.analyzer.repository.InteractionRepository;
+import ru.practicum.stats.analyzer.repository.SimilarityRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Подбор рекомендаций по соседству событий с ограниченным объёмом работы.
+ * <p>
+ * Берутся N последних взаимодействий пользователя и для каждого события не больше K самых похожих.
+ * Кандидаты - найденные соседи, с которыми пользователь ещё не взаимодействовал (отсекаются одним запросом);
+ * из них кучей минимумов выбираются maxResults с наибольшим сходством с любым из N событий.
+ * Для выбранных кандидатов предсказывается оценка: sum(sim(c, e) * r(e)) / sum(sim(c, e)) по K самым похожим
+ * на c событиям e, с которыми пользователь взаимодействовал; рейтинги этих событий читаются одним запросом.
+ * Отбор по сходству нужен, чтобы слабый сосед события с высоким рейтингом не вытеснял сильных соседей:
+ * у кандидата с одним оценённым соседом предсказание равно рейтингу этого соседа при любом сходстве.
+ * Между запросами к БД проверяется отмена вызова gRPC, чтобы не считать ответ, который уже не нужен.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecommendationScorer {
+
+    private static final Comparator<Candidate> BY_SCORE =
+            Comparator.comparingDouble(Candidate::score).thenComparing(Candidate::eventId, Comparator.reverseOrder());
+
+    private final InteractionRepository interactionRepository;
+    private final SimilarityRepository similarityRepository;
+    private final SimilarityIndex similarityIndex;
+    private final RecommendationsProperties properties;
+
+    public List<RecommendedEventProto> recommend(long userId, int maxResults) {
+        if (maxResults <= 0) {
+            return List.of();
+        }
+        List<Interaction> recent = interactionRepository
+                .findRecentByUserId(userId, properties.getRecentInteractions());
+        if (recent.isEmpty()) {
+            return List.of();
+        }
+        checkCancelled();
+
+        // событие пользователя -> рейтинг
+        Map<Long, Double> ratings = new HashMap<>();
+        for (Interaction interaction : recent) {
+            ratings.put(interaction.getEventId(), interaction.getRating());
+        }
+        // кандидат -> {событие пользователя -> сходство}
+        Map<Long, Map<Long, Double>> sources = new HashMap<>();
+        for (Interaction interaction : recent) {
+            checkCancelled();
+            long eventId = interaction.getEventId();
+            forEachNeighbour(eventId, (candidateId, similarity) -> {
+                if (!ratings.containsKey(candidateId)) {
+                    sources.computeIfAbsent(candidateId, k -> new HashMap<>()).put(eventId, similarity);
+                }
+            });
+        }
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+
+        // Найденные события, с которыми пользователь взаимодействовал раньше N последних, не кандидаты,
+        // но их рейтинги участвуют в предсказании
+        checkCancelled();
+        for (Interaction interaction : interactionRepository.findByUserIdAndEventIdIn(userId, sources.keySet())) {
+            ratings.merge(interaction.getEventId(), interaction.getRating(), Math::max);
+        }
+        List<Candidate> selected = top(sources.entrySet().stream()
+                .filter(entry -> !ratings.containsKey(entry.getKey()))
+                .map(entry -> new Candidate(entry.getKey(), Collections.max(entry.getValue().values())))
+                .toList(), maxResults);
+        if (selected.isEmpty()) {
+            return List.of();
+        }
+
+        // Соседи кандидатов: найденные через события пользователя и собственные K самых похожих
+        Map<Long, Map<Long, Double>> neighbourhoods = new HashMap<>();
+        Set<Long> unrated = new HashSet<>();
+        for (Candidate candidate : selected) {
+            checkCancelled();
+            Map<Long, Double> neighbourhood = new HashMap<>(sources.get(candidate.eventId()));
+            forEachNeighbour(candidate.eventId(), (neighbourId, similarity) -> {
+                neighbourhood.put(neighbourId, similarity);
+                if (!ratings.containsKey(neighbourId)) {
+                    unrated.add(neighbourId);
+                }
+            });
+            neighbourhoods.put(candidate.eventId(), neighbourhood);
+        }
+        if (!unrated.isEmpty()) {
+            checkCancelled();
+            for (Interaction interaction : interactionRepository.findByUserIdAndEventIdIn(userId, unrated)) {
+                ratings.merge(interaction.getEventId(), interaction.getRating(), Math::max);
+            }
+        }
+
+        List<Candidate> predicted = new ArrayList<>(selected.size());
+        for (Candidate candidate : selected) {
+            predicted.add(new Candidate(candidate.eventId(),
+                    predict(neighbourhoods.get(candidate.eventId()), ratings)));
+        }
+        return top(predicted, maxResults).stream()
+                .map(candidate -> RecommendedEventProto.newBuilder()
+                        .setEventId(candidate.eventId())
+                        .setScore(candidate.score())
+                        .build())
+                .toList();
+    }
+
+    // Взвешенная сумма рейтингов по K самым похожим соседям с рейтингом пользователя
+    private double predict(Map<Long, Double> neighbourhood, Map<Long, Double> ratings) {
+        List<Map.Entry<Long, Double>> rated = new ArrayList<>();
+        neighbourhood.forEach((eventId, similarity) -> {
+            if (ratings.containsKey(eventId) && similarity > 0) {
+                rated.add(Map.entry(eventId, similarity));
+            }
+        });
+        rated.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+        int count = Math.min(properties.getNeighboursPerEvent(), rated.size());
+        double weighted = 0;
+        double total = 0;
+        for (Map.Entry<Long, Double> entry : rated.subList(0, count)) {
+            weighted += entry.getValue() * ratings.get(entry.getKey());
+            total += entry.getValue();
+        }
+        return total > 0 ? weighted / total : 0;
+    }
+
+    // Не больше limit лучших кандидатов по убыванию оценки, выбранных кучей минимумов
+    private static List<Candidate> top(List<Candidate> candidates, int limit) {
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(limit + 1, BY_SCORE);
+        for (Candidate candidate : candidates) {
+            if (heap.size() < limit) {
+                heap.add(candidate);
+            } else if (BY_SCORE.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+        List<Candidate> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // До загрузки индекса сходств соседи читаются из БД запросом с LIMIT
+    private void forEachNeighbour(long eventId, SimilarityIndex.NeighbourConsumer consumer) {
+        int limit = properties.getNeighboursPerEvent();
+        if (similarityIndex.isReady()) {
+            similarityIndex.forEachTop(eventId, limit, consumer);
+            return;
+        }
+        for (EventSimilarity similarity : similarityRepository.findByEventIdOrderBySimilarityDesc(eventId, limit)) {
+            long otherId = similarity.getEvent1() == eventId ? similarity.getEvent2() : similarity.getEvent1();
+            consumer.accept(otherId, similarity.getSimilarity());
+        }
+    }
+
+    // Вне вызова gRPC контекст корневой и никогда не отменяется
+    private static void checkCancelled() {
+        Context context = Context.current();
+        if (context.isCancelled()) {
+            Status status = context.cancellationCause() instanceof TimeoutException
+                    ? Status.DEADLINE_EXCEEDED
+                    : Status.CANCELLED;
+            throw status.withDescription("Вызов отменён во время подсчёта рекомендаций")
+                    .withCause(context.cancellationCause())
+                    .asRuntimeException();
+        }
+    }
+
+    private record Candidate(long eventId, double score) {
+    }
+}
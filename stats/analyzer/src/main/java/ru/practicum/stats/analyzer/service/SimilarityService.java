@@ -2,6 +2,11 @@ package ru.practicum.stats.analyzer.service;
 
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 
+import java.util.List;
+
 public interface SimilarityService {
     void handle(EventSimilarityAvro value);
+
+    // Сохраняет сходства одного poll в одной транзакции
+    void handleBatch(List<EventSimilarityAvro> similarities);
 }
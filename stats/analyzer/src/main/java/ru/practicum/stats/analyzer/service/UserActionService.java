@@ -2,6 +2,12 @@ package ru.practicum.stats.analyzer.service;
 
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 
+import java.util.List;
+import java.util.Map;
+
 public interface UserActionService {
     void handle(UserActionAvro avro);
+
+    // Сохраняет действия одного poll в одной транзакции, возвращает прирост суммы рейтингов по событиям
+    Map<Long, Double> handleBatch(List<UserActionAvro> actions);
 }
@@ -7,16 +7,18 @@ import ru.practicum.grpc.stats.recommendation.InteractionsCountRequestProto;
 import ru.practicum.grpc.stats.recommendation.RecommendedEventProto;
 import ru.practicum.grpc.stats.recommendation.SimilarEventsRequestProto;
 import ru.practicum.grpc.stats.recommendation.UserPredictionsRequestProto;
-import ru.practicum.stats.analyzer.model.EventSimilarity;
-import ru.practicum.stats.analyzer.model.Interaction;
-import ru.practicum.stats.analyzer.repository.InteractionRepository;
+import ru.practicum.stats.analyzer.index.EventRatingCache;
+import ru.practicum.stats.analyzer.index.RecommendationCache;
+import ru.practicum.stats.analyzer.index.SimilarityIndex;
+import ru.practicum.stats.analyzer.model.EventRating;
+import ru.practicum.stats.analyzer.repository.EventRatingRepository;
 import ru.practicum.stats.analyzer.repository.SimilarityRepository;
+import ru.practicum.stats.analyzer.scoring.RecommendationScorer;
 import ru.practicum.stats.analyzer.service.RecommendationsService;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,65 +26,22 @@ import java.util.stream.Stream;
 @Slf4j
 @RequiredArgsConstructor
 public class RecommendationsServiceImpl implements RecommendationsService {
-    private final InteractionRepository interactionRepository;
     private final SimilarityRepository similarityRepository;
+    private final EventRatingRepository eventRatingRepository;
+    private final SimilarityIndex similarityIndex;
+    private final EventRatingCache eventRatingCache;
+    private final RecommendationScorer recommendationScorer;
+    private final RecommendationCache recommendationCache;
 
     @Override
     public Stream<RecommendedEventProto> getRecommendationsForUser(UserPredictionsRequestProto request) {
-        Long userId = request.getUserId();
+        long userId = request.getUserId();
         int maxResults = (int) request.getMaxResults();
 
         log.info("Рекомендации для пользователя {}", userId);
 
-        // Получаем взаимодействия пользователя
-        List<Interaction> userInteractions = interactionRepository
-                .findByUserIdOrderByTimestampDesc(userId);
-
-        if (userInteractions.isEmpty()) {
-            return Stream.empty();
-        }
-
-        // События, с которыми уже взаимодействовал
-        Set<Long> userEventIds = userInteractions.stream()
-                .map(Interaction::getEventId)
-                .collect(Collectors.toSet());
-
-        // Map рейтингов
-        Map<Long, Double> eventRatings = userInteractions.stream()
-                .collect(Collectors.toMap(
-                        Interaction::getEventId,
-                        Interaction::getRating,
-                        Math::max
-                ));
-
-        // Ищем похожие события
-        List<EventSimilarity> similarities = similarityRepository
-                .findByEventIdIn(userEventIds);
-
-        Map<Long, Double> candidateScores = new HashMap<>();
-
-        for (EventSimilarity sim : similarities) {
-            Long candidateId = extractCandidate(sim, userEventIds);
-            if (candidateId != null) {
-                Long userEventId = sim.getEvent1().equals(candidateId)
-                        ? sim.getEvent2()
-                        : sim.getEvent1();
-
-                Double rating = eventRatings.get(userEventId);
-                if (rating != null) {
-                    double score = rating * sim.getSimilarity();
-                    candidateScores.merge(candidateId, score, Math::max);
-                }
-            }
-        }
-
-        return candidateScores.entrySet().stream()
-                .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
-                .limit(maxResults)
-                .map(entry -> RecommendedEventProto.newBuilder()
-                        .setEventId(entry.getKey())
-                        .setScore(entry.getValue())
-                        .build());
+        return recommendationCache.get(userId, maxResults,
+                () -> recommendationScorer.recommend(userId, maxResults)).stream();
     }
 
     @Override
@@ -92,6 +51,17 @@ public class RecommendationsServiceImpl implements RecommendationsService {
 
         log.info("Похожие события для {}", eventId);
 
+        if (similarityIndex.isReady()) {
+            List<RecommendedEventProto> result = new ArrayList<>(Math.min(maxResults, 64));
+            similarityIndex.forEachTop(eventId, maxResults, (otherId, similarity) ->
+                    result.add(RecommendedEventProto.newBuilder()
+                            .setEventId(otherId)
+                            .setScore(similarity)
+                            .build()));
+            return result.stream();
+        }
+
+        // Пока индекс не загружен или отключён, запрос идёт в БД
         return similarityRepository
                 .findByEventIdOrderBySimilarityDesc(eventId, maxResults)
                 .stream()
@@ -108,26 +78,20 @@ public class RecommendationsServiceImpl implements RecommendationsService {
 
     @Override
     public Stream<RecommendedEventProto> getInteractionsCount(InteractionsCountRequestProto request) {
-        List<Long> eventsIds = request.getEventIdList();
-
-        return eventsIds.stream()
+        List<Long> eventsIds = request.getEventIdList().stream()
                 .distinct()
-                .map(eventId -> {
-                    Double sum = interactionRepository.sumMaxRatingPerUserByEventId(eventId);
-                    return RecommendedEventProto.newBuilder()
-                            .setEventId(eventId)
-                            .setScore(sum != null ? sum : 0.0)
-                            .build();
-                })
-                .sorted((a,b) -> Double.compare(b.getScore(), a.getScore()));
-    }
+                .toList();
 
-    private Long extractCandidate(EventSimilarity sim, Set<Long> userEventIds) {
-        if (userEventIds.contains(sim.getEvent1())) {
-            return sim.getEvent2();
-        } else if (userEventIds.contains(sim.getEvent2())) {
-            return sim.getEvent1();
-        }
-        return null;
+        // Промахи кеша читаются из event_rating по первичному ключу
+        Map<Long, Double> sums = eventRatingCache.getAll(eventsIds, misses ->
+                eventRatingRepository.findAllById(misses).stream()
+                        .collect(Collectors.toMap(EventRating::getEventId, EventRating::getRatingSum)));
+
+        return sums.entrySet().stream()
+                .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
+                .map(entry -> RecommendedEventProto.newBuilder()
+                        .setEventId(entry.getKey())
+                        .setScore(entry.getValue())
+                        .build());
     }
 }
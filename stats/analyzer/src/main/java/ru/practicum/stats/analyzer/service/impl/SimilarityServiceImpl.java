@@ -9,6 +9,11 @@ import ru.practicum.stats.analyzer.model.EventSimilarity;
 import ru.practicum.stats.analyzer.repository.SimilarityRepository;
 import ru.practicum.stats.analyzer.service.SimilarityService;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -18,37 +23,42 @@ public class SimilarityServiceImpl implements SimilarityService {
 
     @Override
     public void handle(EventSimilarityAvro avro) {
-        log.info("Сохранение сходства событий {} и {}: {}", avro.getEventA(), avro.getEventB(), avro.getScore());
-
-        // event1 всегда меньше event2
-        Long event1 = Math.min(avro.getEventA(), avro.getEventB());
-        Long event2 = Math.max(avro.getEventA(), avro.getEventB());
-
-        similarityRepository
-                .findByEvent1AndEvent2(event1, event2)
-                .ifPresentOrElse(
-                        existing -> updateSimilarity(existing, avro),
-                        () -> createNew(event1, event2, avro)
-                        
-                );
+        handleBatch(List.of(avro));
     }
 
-    private void updateSimilarity(EventSimilarity existing, EventSimilarityAvro avro) {
-        existing.setSimilarity(avro.getScore());
-        existing.setTimestamp(avro.getTimestamp());
-        similarityRepository.save(existing);
-        log.debug("Сходство мероприятий обновлено");
-    }
+    @Override
+    public void handleBatch(List<EventSimilarityAvro> similarities) {
+        if (similarities.isEmpty()) {
+            return;
+        }
 
-    private void createNew(Long event1, Long event2, EventSimilarityAvro avro) {
-        EventSimilarity similarity = new EventSimilarity();
-        similarity.setEvent1(event1);
-        similarity.setEvent2(event2);
-        similarity.setSimilarity(avro.getScore());
-        similarity.setTimestamp(avro.getTimestamp());
+        // Для каждой пары остаётся последняя оценка: сообщения пары идут по одному ключу в порядке оффсетов
+        Map<PairKey, EventSimilarity> latest = new LinkedHashMap<>();
+        for (EventSimilarityAvro avro : similarities) {
+            // event1 всегда меньше event2
+            long event1 = Math.min(avro.getEventA(), avro.getEventB());
+            long event2 = Math.max(avro.getEventA(), avro.getEventB());
+            latest.put(new PairKey(event1, event2),
+                    new EventSimilarity(null, event1, event2, avro.getScore(), avro.getTimestamp()));
+        }
 
-        similarityRepository.save(similarity);
-        log.debug("Создано новое сходство между событиями с id {} и {}", event1, event2);
+        // Нулевая оценка приходит, когда у пары не осталось общих пользователей
+        List<EventSimilarity> upserts = new ArrayList<>(latest.size());
+        List<EventSimilarity> deletes = new ArrayList<>();
+        for (EventSimilarity similarity : latest.values()) {
+            if (similarity.getSimilarity() > 0) {
+                upserts.add(similarity);
+            } else {
+                deletes.add(similarity);
+            }
+        }
+
+        similarityRepository.upsertSimilarities(upserts);
+        similarityRepository.deleteSimilarities(deletes);
+        log.info("Сохранено сходств: получено={}, пар={}, удалено={}",
+                similarities.size(), upserts.size(), deletes.size());
     }
 
+    private record PairKey(long event1, long event2) {
+    }
 }
@@ -7,9 +7,14 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.stats.avro.ActionTypeAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 import ru.practicum.stats.analyzer.model.Interaction;
+import ru.practicum.stats.analyzer.repository.EventRatingRepository;
 import ru.practicum.stats.analyzer.repository.InteractionRepository;
 import ru.practicum.stats.analyzer.service.UserActionService;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -17,38 +22,35 @@ import ru.practicum.stats.analyzer.service.UserActionService;
 public class UserActionServiceImpl implements UserActionService {
 
     private final InteractionRepository interactionRepository;
+    private final EventRatingRepository eventRatingRepository;
 
     @Override
     public void handle(UserActionAvro avro) {
-        log.info("Сохранение действия: userId={}, eventId={}, action={}",
-                avro.getUserId(), avro.getEventId(), avro.getActionType());
-
-        Double rating = convertActionToRating(avro.getActionType());
-
-        interactionRepository
-                .findByUserIdAndEventId(avro.getUserId(), avro.getEventId())
-                .ifPresentOrElse(
-                        existing -> updateAction(existing, rating, avro),
-                        () -> createNew(avro, rating)
-                );
+        handleBatch(List.of(avro));
     }
 
-    private void createNew(UserActionAvro avro, Double rating) {
-        Interaction interaction = new Interaction();
-        interaction.setUserId(avro.getUserId());
-        interaction.setEventId(avro.getEventId());
-        interaction.setRating(rating);
-        interaction.setTimestamp(avro.getTimestamp());
-        interactionRepository.save(interaction);
-    }
+    @Override
+    public Map<Long, Double> handleBatch(List<UserActionAvro> actions) {
+        if (actions.isEmpty()) {
+            return Map.of();
+        }
 
-    private void updateAction(Interaction existing, Double rating, UserActionAvro avro) {
-        if(rating > existing.getRating()) {
-            existing.setRating(rating);
-            existing.setTimestamp(avro.getTimestamp());
-            interactionRepository.save(existing);
-            log.debug("Обновлен рейтинг у взаимодействия пользователя с событием с id {}", existing.getId());
+        // Одна строка на пару (пользователь, событие): повторное изменение строки в одном INSERT ... ON CONFLICT
+        // недопустимо. Остаётся максимальный рейтинг со временем первого действия, которое его дало
+        Map<InteractionKey, Interaction> interactions = new LinkedHashMap<>();
+        for (UserActionAvro avro : actions) {
+            Double rating = convertActionToRating(avro.getActionType());
+            interactions.merge(
+                    new InteractionKey(avro.getUserId(), avro.getEventId()),
+                    new Interaction(null, avro.getUserId(), avro.getEventId(), rating, avro.getTimestamp()),
+                    (existing, next) -> next.getRating() > existing.getRating() ? next : existing);
         }
+
+        // Суммы рейтингов событий меняются в той же транзакции на прирост от поднятых рейтингов
+        Map<Long, Double> deltas = interactionRepository.upsertMaxRating(interactions.values());
+        eventRatingRepository.addRatings(deltas);
+        log.info("Сохранено действий: {}, взаимодействий: {}", actions.size(), interactions.size());
+        return deltas;
     }
 
     private Double convertActionToRating(ActionTypeAvro actionType) {
@@ -59,4 +61,7 @@ public class UserActionServiceImpl implements UserActionService {
             default -> throw new IllegalArgumentException("Неизвестный тип: " + actionType);
         };
     }
+
+    private record InteractionKey(long userId, long eventId) {
+    }
 }
@@ -4,6 +4,7 @@ CREATE TABLE IF NOT EXISTS interactions (
     event_id BIGINT NOT NULL,
     rating DOUBLE PRECISION NOT NULL,
     ts TIMESTAMP WITH TIME ZONE NOT NULL,
+    -- уникальный индекс нужен пакетной записи INSERT ... ON CONFLICT (user_id, event_id)
     UNIQUE (user_id, event_id)
 );
 
@@ -13,5 +14,12 @@ CREATE TABLE IF NOT EXISTS similarities (
     event2 BIGINT NOT NULL,
     similarity DOUBLE PRECISION NOT NULL,
     ts TIMESTAMP WITH TIME ZONE NOT NULL,
+    -- уникальный индекс нужен пакетной записи INSERT ... ON CONFLICT (event1, event2)
     UNIQUE (event1, event2)
-);
\ No newline at end of file
+);
+
+-- сумма максимальных рейтингов пользователей по событию, обновляется вместе с interactions
+CREATE TABLE IF NOT EXISTS event_rating (
+    event_id BIGINT PRIMARY KEY,
+    rating_sum DOUBLE PRECISION NOT NULL
+);
@@ -0,0 +1,139 @@
+package ru.practicum.stats.analyzer.scoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.practicum.grpc.stats.recommendation.RecommendedEventProto;
+import ru.practicum.stats.analyzer.config.RecommendationsProperties;
+import ru.practicum.stats.analyzer.index.SimilarityIndex;
+import ru.practicum.stats.analyzer.model.EventSimilarity;
+import ru.practicum.stats.analyzer.model.Interaction;
+import ru.practicum.stats.analyzer.repository.InteractionRepository;
+import ru.practicum.stats.analyzer.repository.SimilarityRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecommendationScorerTest {
+
+    private static final long USER = 1;
+    private static final double VIEW = 0.4;
+    private static final double LIKE = 1.0;
+
+    private final InteractionRepository interactionRepository = mock(InteractionRepository.class);
+    private final SimilarityRepository similarityRepository = mock(SimilarityRepository.class);
+    // событие -> соседи по убыванию сходства
+    private final Map<Long, List<EventSimilarity>> similarities = new HashMap<>();
+    // событие -> рейтинг пользователя, по убыванию времени взаимодействия
+    private final Map<Long, Double> ratings = new LinkedHashMap<>();
+
+    private RecommendationScorer scorer;
+
+    @BeforeEach
+    void setUp() {
+        RecommendationsProperties properties = new RecommendationsProperties();
+        properties.setRecentInteractions(2);
+        properties.setNeighboursPerEvent(2);
+        // Индекс отключён: соседи читаются из SimilarityRepository
+        SimilarityIndex index = new SimilarityIndex(false, null, mock(PlatformTransactionManager.class));
+        scorer = new RecommendationScorer(interactionRepository, similarityRepository, index, properties);
+
+        when(interactionRepository.findRecentByUserId(eq(USER), anyInt())).thenAnswer(invocation -> {
+            int limit = invocation.getArgument(1);
+            return interactions(ratings.keySet()).subList(0, Math.min(limit, ratings.size()));
+        });
+        when(interactionRepository.findByUserIdAndEventIdIn(eq(USER), any())).thenAnswer(invocation ->
+                interactions(invocation.<Collection<Long>>getArgument(1)));
+        when(similarityRepository.findByEventIdOrderBySimilarityDesc(anyLong(), anyInt())).thenAnswer(invocation -> {
+            List<EventSimilarity> list = similarities.getOrDefault(invocation.<Long>getArgument(0), List.of());
+            return list.subList(0, Math.min(invocation.<Integer>getArgument(1), list.size()));
+        });
+    }
+
+    @Test
+    void selectsCandidatesBySimilarityRatherThanSourceRating() {
+        ratings.put(10L, LIKE);
+        ratings.put(20L, VIEW);
+        similar(10, 11, 0.01);
+        similar(20, 21, 0.99);
+
+        List<RecommendedEventProto> result = scorer.recommend(USER, 1);
+
+        assertThat(result).extracting(RecommendedEventProto::getEventId).containsExactly(21L);
+    }
+
+    @Test
+    void predictsFromMostSimilarRatedNeighboursIncludingOlderInteractions() {
+        ratings.put(20L, VIEW);
+        ratings.put(30L, LIKE);
+        ratings.put(40L, LIKE);
+        similar(20, 21, 0.9);
+        // 30 и 40 старше двух последних взаимодействий; в соседство 21 попадают только два самых похожих
+        similar(21, 30, 0.6);
+        similar(21, 40, 0.1);
+
+        List<RecommendedEventProto> result = scorer.recommend(USER, 5);
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getEventId()).isEqualTo(21L);
+        assertThat(result.get(0).getScore()).isCloseTo((0.9 * VIEW + 0.6 * LIKE) / (0.9 + 0.6), within(1e-9));
+    }
+
+    @Test
+    void skipsEventsUserAlreadyInteractedWith() {
+        ratings.put(10L, LIKE);
+        ratings.put(20L, VIEW);
+        ratings.put(30L, LIKE);
+        similar(10, 30, 0.9);
+        similar(10, 11, 0.5);
+
+        List<RecommendedEventProto> result = scorer.recommend(USER, 5);
+
+        assertThat(result).extracting(RecommendedEventProto::getEventId).containsExactly(11L);
+    }
+
+    @Test
+    void ordersSelectedCandidatesByPredictedScore() {
+        ratings.put(10L, LIKE);
+        ratings.put(20L, VIEW);
+        similar(10, 11, 0.5);
+        similar(20, 21, 0.9);
+
+        List<RecommendedEventProto> result = scorer.recommend(USER, 2);
+
+        assertThat(result).extracting(RecommendedEventProto::getEventId).containsExactly(11L, 21L);
+        assertThat(result).extracting(RecommendedEventProto::getScore).containsExactly(LIKE, VIEW);
+    }
+
+    private void similar(long first, long second, double similarity) {
+        EventSimilarity row = new EventSimilarity(null, first, second, similarity, Instant.EPOCH);
+        similarities.computeIfAbsent(first, k -> new ArrayList<>()).add(row);
+        similarities.computeIfAbsent(second, k -> new ArrayList<>()).add(row);
+        similarities.values().forEach(list ->
+                list.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity())));
+    }
+
+    private List<Interaction> interactions(Collection<Long> eventIds) {
+        List<Interaction> result = new ArrayList<>();
+        ratings.forEach((eventId, rating) -> {
+            if (eventIds.contains(eventId)) {
+                result.add(new Interaction(null, USER, eventId, rating, Instant.EPOCH));
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.stats.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.deserializer.BaseAvroDeserializer;
+import ru.practicum.kafka.deserializer.EventSimilarityDeserializer;
+import ru.practicum.kafka.deserializer.UserActionDeserializer;
+import ru.practicum.kafka.serializer.GeneralAvroSerializer;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация и десериализация сообщений топиков действий и сходств. Десериализация действий измеряется
+ * и из ByteBuffer, как её вызывает консьюмер, в том числе с переиспользованием записей.
+ * Скорость выделения памяти на операцию: {@code java -jar benchmarks.jar AvroSerdeBenchmark -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvroSerdeBenchmark {
+
+    private static final int SIZE = 1 << 12;
+    private static final String ACTIONS_TOPIC = "stats.user-actions.v1";
+    private static final String SIMILARITY_TOPIC = "stats.events-similarity.v1";
+
+    private GeneralAvroSerializer serializer;
+    private UserActionDeserializer actionDeserializer;
+    private UserActionDeserializer reusingActionDeserializer;
+    private EventSimilarityDeserializer similarityDeserializer;
+
+    private UserActionAvro[] actions;
+    private EventSimilarityAvro[] similarities;
+    private byte[][] actionBytes;
+    private byte[][] similarityBytes;
+    private ByteBuffer[] actionBuffers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = new GeneralAvroSerializer();
+        actionDeserializer = new UserActionDeserializer();
+        reusingActionDeserializer = new UserActionDeserializer();
+        reusingActionDeserializer.configure(Map.of(BaseAvroDeserializer.REUSE_RECORDS_CONFIG, 500), false);
+        similarityDeserializer = new EventSimilarityDeserializer();
+
+        actions = new ZipfActionStream(100_000, 100_000, 1.0, 42).take(SIZE);
+        similarities = new EventSimilarityAvro[SIZE];
+        actionBytes = new byte[SIZE][];
+        similarityBytes = new byte[SIZE][];
+        actionBuffers = new ByteBuffer[SIZE];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < SIZE; i++) {
+            long eventA = random.nextLong(100_000);
+            similarities[i] = EventSimilarityAvro.newBuilder()
+                    .setEventA(eventA)
+                    .setEventB(eventA + 1 + random.nextLong(100_000))
+                    .setScore(random.nextDouble())
+                    .setTimestamp(Instant.ofEpochMilli(actions[i].getTimestamp().toEpochMilli()))
+                    .build();
+            actionBytes[i] = serializer.serialize(ACTIONS_TOPIC, actions[i]);
+            similarityBytes[i] = serializer.serialize(SIMILARITY_TOPIC, similarities[i]);
+            actionBuffers[i] = ByteBuffer.wrap(actionBytes[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeUserAction() {
+        return serializer.serialize(ACTIONS_TOPIC, actions[nextIndex()]);
+    }
+
+    @Benchmark
+    public byte[] serializeEventSimilarity() {
+        return serializer.serialize(SIMILARITY_TOPIC, similarities[nextIndex()]);
+    }
+
+    @Benchmark
+    public UserActionAvro deserializeUserAction() {
+        return actionDeserializer.deserialize(ACTIONS_TOPIC, actionBytes[nextIndex()]);
+    }
+
+    @Benchmark
+    public UserActionAvro deserializeUserActionFromBuffer() {
+        return actionDeserializer.deserialize(ACTIONS_TOPIC, null, actionBuffers[nextIndex()]);
+    }
+
+    @Benchmark
+    public UserActionAvro deserializeUserActionReused() {
+        return reusingActionDeserializer.deserialize(ACTIONS_TOPIC, null, actionBuffers[nextIndex()]);
+    }
+
+    @Benchmark
+    public EventSimilarityAvro deserializeEventSimilarity() {
+        return similarityDeserializer.deserialize(SIMILARITY_TOPIC, similarityBytes[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (next + 1) & (SIZE - 1);
+        return index;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.practicum.stats.benchmark;
+
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.core.KafkaTemplate;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.grpc.stats.action.ActionTypeProto;
+import ru.practicum.grpc.stats.action.UserActionProto;
+import ru.practicum.grpc.stats.collector.UserActionControllerGrpc;
+import ru.practicum.kafka.serializer.GeneralAvroSerializer;
+import ru.practicum.stats.collector.config.AckMode;
+import ru.practicum.stats.collector.config.KafkaTopic;
+import ru.practicum.stats.collector.config.KafkaTopicConfig;
+import ru.practicum.stats.collector.controller.UserActionController;
+import ru.practicum.stats.collector.service.ActionDeduplicator;
+import ru.practicum.stats.collector.service.KafkaUserActionProducer;
+import ru.practicum.stats.collector.service.UserActionService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Приём действий коллектором по gRPC через loopback: унарный CollectUserAction на каждое действие
+ * против потокового CollectUserActions с пакетом из BATCH действий и одним ответом.
+ * Kafka заменена MockProducer, подтверждающим отправку сразу, поэтому сравнивается только стоимость вызовов.
+ * <pre>
+ * java -jar benchmarks.jar CollectorIngestBenchmark -t 4
+ * </pre>
+ * Результат в действиях в секунду для обоих методов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectorIngestBenchmark {
+
+    private static final int BATCH = 100;
+    private static final int SIZE = 1 << 12;
+    private static final String TOPIC = "stats.user-actions.v1";
+
+    // С мгновенным подтверждением MockProducer режимы различаются только моментом ответа
+    @Param({"FIRE_AND_FORGET", "DURABLE"})
+    private AckMode ackMode;
+
+    private MockProducer<Long, SpecificRecordBase> mockProducer;
+    private KafkaTemplate<Long, SpecificRecordBase> kafkaTemplate;
+    private Server server;
+    private ManagedChannel channel;
+    private UserActionProto[] actions;
+
+    @State(Scope.Thread)
+    public static class Client {
+        private UserActionControllerGrpc.UserActionControllerBlockingStub blockingStub;
+        private UserActionControllerGrpc.UserActionControllerStub asyncStub;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(CollectorIngestBenchmark benchmark) {
+            blockingStub = UserActionControllerGrpc.newBlockingStub(benchmark.channel);
+            asyncStub = UserActionControllerGrpc.newStub(benchmark.channel);
+        }
+
+        private int nextIndex() {
+            int index = next;
+            next = (next + 1) & (SIZE - 1);
+            return index;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // KafkaTemplate закрывает продюсер после каждой отправки вне транзакции: фабрика по умолчанию
+        // отдаёт обёртку, игнорирующую close, а здесь продюсер один на весь прогон
+        mockProducer = new MockProducer<>(true, new LongSerializer(), new GeneralAvroSerializer()) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        kafkaTemplate = new KafkaTemplate<>(() -> mockProducer);
+        KafkaTopicConfig topicConfig = new KafkaTopicConfig();
+        topicConfig.getTopics().put(KafkaTopic.USER_ACTIONS, TOPIC);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Без журнала: MockProducer не отказывает в отправке. Без подавления повторов: действия берутся по кругу
+        UserActionService service = new UserActionService(
+                new KafkaUserActionProducer(kafkaTemplate, topicConfig, null, ackMode, meterRegistry),
+                new ActionDeduplicator(false, Set.of(), Duration.ofMinutes(1), 0, meterRegistry),
+                ackMode, meterRegistry);
+
+        server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                .addService(new UserActionController(service))
+                .build()
+                .start();
+        channel = Grpc.newChannelBuilder("localhost:" + server.getPort(), InsecureChannelCredentials.create())
+                .build();
+
+        UserActionAvro[] avro = new ZipfActionStream(10_000, 100_000, 1.0, 42).take(SIZE);
+        actions = new UserActionProto[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            actions[i] = UserActionProto.newBuilder()
+                    .setUserId(avro[i].getUserId())
+                    .setEventId(avro[i].getEventId())
+                    .setActionType(switch (avro[i].getActionType()) {
+                        case VIEW -> ActionTypeProto.ACTION_VIEW;
+                        case REGISTER -> ActionTypeProto.ACTION_REGISTER;
+                        case LIKE -> ActionTypeProto.ACTION_LIKE;
+                        default -> throw new IllegalArgumentException("Неизвестный тип: " + avro[i].getActionType());
+                    })
+                    .setTimestamp(Timestamp.newBuilder()
+                            .setSeconds(avro[i].getTimestamp().getEpochSecond())
+                            .setNanos(avro[i].getTimestamp().getNano()))
+                    .build();
+        }
+    }
+
+    // MockProducer хранит историю отправок
+    @TearDown(Level.Iteration)
+    public void clearHistory() {
+        mockProducer.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        kafkaTemplate.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void unary(Client client) {
+        for (int i = 0; i < BATCH; i++) {
+            client.blockingStub.collectUserAction(actions[client.nextIndex()]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void clientStreaming(Client client) throws Exception {
+        CompletableFuture<Empty> ack = new CompletableFuture<>();
+        StreamObserver<UserActionProto> requests = client.asyncStub.collectUserActions(new StreamObserver<>() {
+            @Override
+            public void onNext(Empty value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                ack.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                ack.complete(Empty.getDefaultInstance());
+            }
+        });
+        for (int i = 0; i < BATCH; i++) {
+            requests.onNext(actions[client.nextIndex()]);
+        }
+        requests.onCompleted();
+        ack.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.stats.benchmark;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.kafka.serializer.GeneralAvroSerializer;
+
+import java.time.Instant;
+import java.util.Properties;
+
+/**
+ * Сравнение пропускной способности продюсера агрегатора в режимах at-least-once и exactly-once.
+ * Требует запущенный брокер; транзакция открывается на каждые batchSize записей, как на каждый poll агрегатора.
+ * <pre>
+ * java -cp benchmarks.jar ru.practicum.stats.benchmark.DeliveryModeThroughput localhost:9092 1000000 500
+ * </pre>
+ */
+public final class DeliveryModeThroughput {
+
+    private static final String TOPIC = "stats.events-similarity.bench";
+
+    private DeliveryModeThroughput() {
+    }
+
+    public static void main(String[] args) {
+        String bootstrapServers = args.length > 0 ? args[0] : "localhost:9092";
+        int records = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        double atLeastOnce = run(bootstrapServers, records, batchSize, false);
+        double exactlyOnce = run(bootstrapServers, records, batchSize, true);
+        System.out.printf("at-least-once: %.0f msg/s%nexactly-once:  %.0f msg/s (%.1f%%)%n",
+                atLeastOnce, exactlyOnce, exactlyOnce / atLeastOnce * 100);
+    }
+
+    private static double run(String bootstrapServers, int records, int batchSize, boolean transactional) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, GeneralAvroSerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        if (transactional) {
+            props.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, "aggregator-bench-" + System.nanoTime());
+        }
+
+        try (KafkaProducer<String, EventSimilarityAvro> producer = new KafkaProducer<>(props)) {
+            if (transactional) {
+                producer.initTransactions();
+            }
+            long start = System.nanoTime();
+            for (int sent = 0; sent < records; sent += batchSize) {
+                if (transactional) {
+                    producer.beginTransaction();
+                }
+                for (int i = sent; i < Math.min(records, sent + batchSize); i++) {
+                    EventSimilarityAvro similarity = EventSimilarityAvro.newBuilder()
+                            .setEventA(i % 10_000)
+                            .setEventB(10_000 + i % 7_919)
+                            .setScore(0.5)
+                            .setTimestamp(Instant.now())
+                            .build();
+                    producer.send(new ProducerRecord<>(TOPIC,
+                            similarity.getEventA() + "-" + similarity.getEventB(), similarity));
+                }
+                if (transactional) {
+                    producer.commitTransaction();
+                }
+            }
+            producer.flush();
+            return records / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ru.practicum.stats.benchmark;
+
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.analyzer.model.EventRating;
+import ru.practicum.stats.analyzer.model.EventSimilarity;
+import ru.practicum.stats.analyzer.model.Interaction;
+import ru.practicum.stats.analyzer.repository.EventRatingRepository;
+import ru.practicum.stats.analyzer.repository.InteractionRepository;
+import ru.practicum.stats.analyzer.repository.SimilarityRepository;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Репозитории анализатора в памяти: отвечают на те же запросы, что и JPA-репозитории в RecommendationsServiceImpl,
+ * без базы данных, поэтому бенчмарк измеряет только логику подсчёта рекомендаций.
+ * Остальные методы репозиториев бросают UnsupportedOperationException.
+ */
+public final class InMemoryStatsRepositories {
+
+    private static final Comparator<EventSimilarity> BY_SIMILARITY_DESC =
+            Comparator.comparing(EventSimilarity::getSimilarity).reversed();
+
+    // пользователь -> взаимодействия по убыванию времени
+    private final Map<Long, List<Interaction>> userInteractions = new HashMap<>();
+    // событие -> сумма рейтингов
+    private final Map<Long, Double> eventRatingSums = new HashMap<>();
+    // событие -> сходства с его участием по убыванию
+    private final Map<Long, List<EventSimilarity>> eventSimilarities = new HashMap<>();
+
+    // Взаимодействия с максимальным рейтингом пользователя по событию, как их сохраняет UserActionProcessor
+    public void addActions(UserActionAvro[] actions) {
+        Map<Long, Map<Long, Interaction>> byUser = new HashMap<>();
+        for (UserActionAvro action : actions) {
+            double rating = switch (action.getActionType()) {
+                case VIEW -> 0.4;
+                case REGISTER -> 0.8;
+                case LIKE -> 1.0;
+                default -> throw new IllegalArgumentException("Неизвестный тип: " + action.getActionType());
+            };
+            Interaction interaction = byUser.computeIfAbsent(action.getUserId(), k -> new HashMap<>())
+                    .computeIfAbsent(action.getEventId(), eventId ->
+                            new Interaction(null, action.getUserId(), eventId, 0.0, action.getTimestamp()));
+            if (rating > interaction.getRating()) {
+                eventRatingSums.merge(action.getEventId(), rating - interaction.getRating(), Double::sum);
+                interaction.setRating(rating);
+            }
+            interaction.setTimestamp(action.getTimestamp());
+        }
+        byUser.forEach((userId, interactions) -> {
+            List<Interaction> list = new ArrayList<>(interactions.values());
+            list.sort(Comparator.comparing(Interaction::getTimestamp).reversed());
+            userInteractions.put(userId, list);
+        });
+    }
+
+    public void addSimilarity(EventSimilarity similarity) {
+        eventSimilarities.computeIfAbsent(similarity.getEvent1(), k -> new ArrayList<>()).add(similarity);
+        eventSimilarities.computeIfAbsent(similarity.getEvent2(), k -> new ArrayList<>()).add(similarity);
+    }
+
+    public void sortSimilarities() {
+        eventSimilarities.values().forEach(list -> list.sort(BY_SIMILARITY_DESC));
+    }
+
+    public List<Long> userIds() {
+        return new ArrayList<>(userInteractions.keySet());
+    }
+
+    public InteractionRepository interactionRepository() {
+        return proxy(InteractionRepository.class, (method, args) -> switch (method.getName()) {
+            case "findByUserIdOrderByTimestampDesc" ->
+                    userInteractions.getOrDefault((Long) args[0], Collections.emptyList());
+            case "sumMaxRatingPerUserByEventId" -> eventRatingSums.get((Long) args[0]);
+            case "findRecentByUserId" -> {
+                List<Interaction> list = userInteractions.getOrDefault((Long) args[0], Collections.emptyList());
+                yield list.subList(0, Math.min((int) args[1], list.size()));
+            }
+            case "findByUserIdAndEventIdIn" -> findByUserIdAndEventIdIn((Long) args[0], (Collection<?>) args[1]);
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    public SimilarityRepository similarityRepository() {
+        return proxy(SimilarityRepository.class, (method, args) -> switch (method.getName()) {
+            case "findByEventIdOrderBySimilarityDesc" -> {
+                List<EventSimilarity> list = eventSimilarities.getOrDefault((Long) args[0], Collections.emptyList());
+                yield list.subList(0, Math.min((int) args[1], list.size()));
+            }
+            case "findByEventIdIn" -> findByEventIdIn((Set<?>) args[0]);
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private List<Interaction> findByUserIdAndEventIdIn(Long userId, Collection<?> eventIds) {
+        Set<Object> requested = Set.copyOf(eventIds);
+        List<Interaction> result = new ArrayList<>();
+        for (Interaction interaction : userInteractions.getOrDefault(userId, Collections.emptyList())) {
+            if (requested.contains(interaction.getEventId())) {
+                result.add(interaction);
+            }
+        }
+        return result;
+    }
+
+    public EventRatingRepository eventRatingRepository() {
+        return proxy(EventRatingRepository.class, (method, args) -> switch (method.getName()) {
+            case "findAllById" -> findAllById((Iterable<?>) args[0]);
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private List<EventRating> findAllById(Iterable<?> eventIds) {
+        List<EventRating> result = new ArrayList<>();
+        for (Object eventId : eventIds) {
+            Double sum = eventRatingSums.get((Long) eventId);
+            if (sum != null) {
+                result.add(new EventRating((Long) eventId, sum));
+            }
+        }
+        return result;
+    }
+
+    // Каждая строка один раз, даже если в наборе оба события пары
+    private List<EventSimilarity> findByEventIdIn(Collection<?> eventIds) {
+        Set<EventSimilarity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<EventSimilarity> result = new ArrayList<>();
+        for (Object eventId : eventIds) {
+            for (EventSimilarity similarity : eventSimilarities.getOrDefault((Long) eventId, Collections.emptyList())) {
+                if (seen.add(similarity)) {
+                    result.add(similarity);
+                }
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "toString" -> "InMemory" + type.getSimpleName();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.handle(method, args);
+                });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args);
+    }
+}
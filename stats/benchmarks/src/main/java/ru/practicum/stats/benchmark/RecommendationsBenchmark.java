@@ -0,0 +1,118 @@
+package ru.practicum.stats.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.grpc.stats.recommendation.InteractionsCountRequestProto;
+import ru.practicum.grpc.stats.recommendation.RecommendedEventProto;
+import ru.practicum.grpc.stats.recommendation.SimilarEventsRequestProto;
+import ru.practicum.grpc.stats.recommendation.UserPredictionsRequestProto;
+import ru.practicum.stats.analyzer.config.RecommendationsProperties;
+import ru.practicum.stats.analyzer.index.EventRatingCache;
+import ru.practicum.stats.analyzer.index.RecommendationCache;
+import ru.practicum.stats.analyzer.index.SimilarityIndex;
+import ru.practicum.stats.analyzer.model.EventSimilarity;
+import ru.practicum.stats.analyzer.scoring.RecommendationScorer;
+import ru.practicum.stats.analyzer.service.impl.RecommendationsServiceImpl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчёт рекомендаций анализатора на репозиториях в памяти: взаимодействия получены из потока Ципфа,
+ * у каждого события до neighbours похожих, причём популярные события чаще оказываются соседями.
+ * Скорость выделения памяти: {@code java -jar benchmarks.jar RecommendationsBenchmark -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommendationsBenchmark {
+
+    @Param({"10000"})
+    private int eventCount;
+
+    @Param({"50000"})
+    private int userCount;
+
+    @Param({"500000"})
+    private int actionCount;
+
+    @Param({"50"})
+    private int neighbours;
+
+    @Param({"10"})
+    private int maxResults;
+
+    private RecommendationsServiceImpl service;
+    private ZipfDistribution popularity;
+    private SplittableRandom random;
+    private List<Long> userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryStatsRepositories repositories = new InMemoryStatsRepositories();
+        repositories.addActions(new ZipfActionStream(eventCount, userCount, 1.0, 42).take(actionCount));
+
+        popularity = new ZipfDistribution(eventCount, 1.0);
+        random = new SplittableRandom(42);
+        Set<Long> pairs = new HashSet<>();
+        for (long eventId = 0; eventId < eventCount; eventId++) {
+            for (int i = 0; i < neighbours; i++) {
+                long other = popularity.sample(random);
+                long first = Math.min(eventId, other);
+                long second = Math.max(eventId, other);
+                if (first != second && pairs.add(first * eventCount + second)) {
+                    repositories.addSimilarity(
+                            new EventSimilarity(null, first, second, random.nextDouble(), Instant.EPOCH));
+                }
+            }
+        }
+        repositories.sortSimilarities();
+
+        // индекс и кеши отключены: данные читаются через репозитории
+        RecommendationsProperties properties = new RecommendationsProperties();
+        properties.getCache().setMaxUsers(0);
+        SimilarityIndex similarityIndex = new SimilarityIndex(false, null, null);
+        RecommendationScorer scorer = new RecommendationScorer(repositories.interactionRepository(),
+                repositories.similarityRepository(), similarityIndex, properties);
+        service = new RecommendationsServiceImpl(repositories.similarityRepository(),
+                repositories.eventRatingRepository(), similarityIndex, new EventRatingCache(0, Duration.ZERO), scorer,
+                new RecommendationCache(properties, new SimpleMeterRegistry()));
+        userIds = repositories.userIds();
+    }
+
+    @Benchmark
+    public List<RecommendedEventProto> recommendationsForUser() {
+        long userId = userIds.get(random.nextInt(userIds.size()));
+        return service.getRecommendationsForUser(UserPredictionsRequestProto.newBuilder()
+                        .setUserId(userId)
+                        .setMaxResults(maxResults)
+                        .build())
+                .toList();
+    }
+
+    @Benchmark
+    public List<RecommendedEventProto> similarEvents() {
+        return service.getSimilarEvents(SimilarEventsRequestProto.newBuilder()
+                        .setEventId(popularity.sample(random))
+                        .setMaxResults(maxResults)
+                        .build())
+                .toList();
+    }
+
+    @Benchmark
+    public List<RecommendedEventProto> interactionsCount() {
+        InteractionsCountRequestProto.Builder request = InteractionsCountRequestProto.newBuilder();
+        for (int i = 0; i < maxResults; i++) {
+            request.addEventId(popularity.sample(random));
+        }
+        return service.getInteractionsCount(request.build()).toList();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.stats.benchmark;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.serializer.GeneralAvroSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выделение памяти при сериализации: прежняя схема (DatumWriter и поток на каждую запись)
+ * против GeneralAvroSerializer с кешем DatumWriter и буферами потоков.
+ * Сериализатор общий для всех потоков бенчмарка, как у продюсера Kafka.
+ * <pre>
+ * java -jar benchmarks.jar SerializerAllocationBenchmark -prof gc -t 4
+ * </pre>
+ * Сравнивать gc.alloc.rate.norm (байт на операцию).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerAllocationBenchmark {
+
+    private static final int SIZE = 1 << 12;
+    private static final String TOPIC = "stats.user-actions.v1";
+
+    private final EncoderFactory encoderFactory = EncoderFactory.get();
+    private GeneralAvroSerializer serializer;
+    private UserActionAvro[] actions;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        private int nextIndex() {
+            int index = next;
+            next = (next + 1) & (SIZE - 1);
+            return index;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = new GeneralAvroSerializer();
+        actions = new ZipfActionStream(100_000, 100_000, 1.0, 42).take(SIZE);
+    }
+
+    @Benchmark
+    public byte[] cachedWriter(Cursor cursor) {
+        return serializer.serialize(TOPIC, actions[cursor.nextIndex()]);
+    }
+
+    // Прежняя реализация без общего энкодера, чтобы её можно было запускать в несколько потоков
+    @Benchmark
+    public byte[] writerPerRecord(Cursor cursor) {
+        SpecificRecordBase data = actions[cursor.nextIndex()];
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
+            BinaryEncoder encoder = encoderFactory.binaryEncoder(out, null);
+            writer.write(data, encoder);
+            encoder.flush();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.stats.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.service.EventSimilarityService;
+import ru.practicum.stats.aggregator.state.StateStoreType;
+import ru.practicum.stats.aggregator.state.StateStores;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость обработки одного действия пользователя в зависимости от размера каталога событий.
+ * При обходе только событий пользователя время на действие не должно расти вместе с eventCount.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilarityUpdateBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int eventCount;
+
+    // сколько действий совершает каждый пользователь
+    @Param({"20"})
+    private int actionsPerUser;
+
+    @Param({"PRIMITIVE", "MAP"})
+    private StateStoreType storeType;
+
+    private EventSimilarityService service;
+    private SplittableRandom random;
+    private long nextUserId;
+    private int userActions;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new EventSimilarityService(
+                StateStores.newWeightStore(storeType), StateStores.newSumStore(storeType), new AggregatorProperties());
+        random = new SplittableRandom(42);
+        nextUserId = 0;
+        userActions = 0;
+
+        // Наполняем каталог: каждое событие просмотрено хотя бы одним пользователем
+        for (long eventId = 0; eventId < eventCount; eventId++) {
+            service.processUserAction(action(nextUserId, eventId));
+            if (++userActions == actionsPerUser) {
+                nextUserId++;
+                userActions = 0;
+            }
+        }
+        nextUserId++;
+        userActions = 0;
+    }
+
+    @Benchmark
+    public List<EventSimilarityAvro> processUserAction() {
+        long eventId = random.nextLong(eventCount);
+        List<EventSimilarityAvro> result = service.processUserAction(action(nextUserId, eventId));
+        if (++userActions == actionsPerUser) {
+            nextUserId++;
+            userActions = 0;
+        }
+        return result;
+    }
+
+    private static UserActionAvro action(long userId, long eventId) {
+        return UserActionAvro.newBuilder()
+                .setUserId(userId)
+                .setEventId(eventId)
+                .setActionType(ActionTypeAvro.VIEW)
+                .setTimestamp(Instant.EPOCH)
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.stats.benchmark;
+
+import ru.practicum.stats.aggregator.state.StateStoreType;
+import ru.practicum.stats.aggregator.state.StateStores;
+import ru.practicum.stats.aggregator.state.WeightStore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.management.MemoryMXBean;
+import java.util.SplittableRandom;
+
+/**
+ * Отчёт о занимаемой памяти хранилищем весов.
+ * Каждый тип хранилища нужно замерять в отдельной JVM:
+ * <pre>
+ * java -Xmx16g -cp benchmarks.jar ru.practicum.stats.benchmark.StateStoreFootprint PRIMITIVE 10000000
+ * java -Xmx16g -cp benchmarks.jar ru.practicum.stats.benchmark.StateStoreFootprint MAP 10000000
+ * </pre>
+ */
+public final class StateStoreFootprint {
+
+    private static final int EVENTS_PER_USER = 20;
+    private static final long EVENT_COUNT = 1_000_000;
+
+    private StateStoreFootprint() {
+    }
+
+    public static void main(String[] args) {
+        StateStoreType type = args.length > 0 ? StateStoreType.valueOf(args[0]) : StateStoreType.PRIMITIVE;
+        int weightCount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        long before = usedHeap();
+        WeightStore store = StateStores.newWeightStore(type);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < weightCount; i++) {
+            long userId = i / EVENTS_PER_USER;
+            // Перебор событий пользователя без повторов: шаг взаимно прост с размером каталога
+            long eventId = (userId * 7919 + (long) (i % EVENTS_PER_USER) * 104_729) % EVENT_COUNT;
+            store.putWeight(eventId, userId, random.nextBoolean() ? 0.4 : 1.0);
+        }
+        long after = usedHeap();
+
+        long bytes = after - before;
+        System.out.printf("store=%s weights=%d heap=%.1f MiB bytesPerWeight=%.1f%n",
+                type, weightCount, bytes / (1024.0 * 1024.0), bytes / (double) weightCount);
+        // Хранилище должно оставаться достижимым до замера
+        Reference.reachabilityFence(store);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.stats.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.stats.aggregator.config.AggregatorProperties;
+import ru.practicum.stats.aggregator.service.EventSimilarityService;
+import ru.practicum.stats.aggregator.state.StateStoreType;
+import ru.practicum.stats.aggregator.state.StateStores;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка потока действий с распределением Ципфа по событиям и пользователям.
+ * Перед замером состояние наполняется warmupActions действиями; каждый вызов обрабатывает следующий
+ * отрезок того же потока целиком, поэтому действия не повторяются и состояние растёт так же,
+ * как в работающем агрегаторе. Отрезок готовится до вызова и в замер не входит.
+ * Скорость выделения памяти: {@code java -jar benchmarks.jar UserActionStreamBenchmark -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserActionStreamBenchmark {
+
+    private static final int CHUNK = 1 << 16;
+
+    @Param({"10000", "100000"})
+    private int eventCount;
+
+    @Param({"100000"})
+    private int userCount;
+
+    @Param({"0.8", "1.2"})
+    private double exponent;
+
+    @Param({"PRIMITIVE", "MAP"})
+    private StateStoreType storeType;
+
+    @Param({"200000"})
+    private int warmupActions;
+
+    private EventSimilarityService service;
+    private ZipfActionStream stream;
+    private UserActionAvro[] actions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new EventSimilarityService(
+                StateStores.newWeightStore(storeType), StateStores.newSumStore(storeType), new AggregatorProperties());
+        stream = new ZipfActionStream(eventCount, userCount, exponent, 42);
+        for (int i = 0; i < warmupActions; i++) {
+            service.processUserAction(stream.next());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void nextChunk() {
+        actions = stream.take(CHUNK);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK)
+    public void processUserAction(Blackhole blackhole) {
+        for (UserActionAvro action : actions) {
+            blackhole.consume(service.processUserAction(action));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.stats.benchmark;
+
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетический поток действий: популярность событий и активность пользователей распределены по Ципфу,
+ * типы действий - 70% просмотров, 20% регистраций, 10% лайков. Поток детерминирован для одного seed.
+ * Время действий растёт на 1 мс за действие.
+ */
+public final class ZipfActionStream {
+
+    private final ZipfDistribution events;
+    private final ZipfDistribution users;
+    private final SplittableRandom random;
+    private long timestamp = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+    public ZipfActionStream(int eventCount, int userCount, double exponent, long seed) {
+        this.events = new ZipfDistribution(eventCount, exponent);
+        this.users = new ZipfDistribution(userCount, exponent);
+        this.random = new SplittableRandom(seed);
+    }
+
+    public UserActionAvro next() {
+        return UserActionAvro.newBuilder()
+                .setUserId(users.sample(random))
+                .setEventId(events.sample(random))
+                .setActionType(nextActionType())
+                .setTimestamp(Instant.ofEpochMilli(timestamp++))
+                .build();
+    }
+
+    public UserActionAvro[] take(int count) {
+        UserActionAvro[] actions = new UserActionAvro[count];
+        for (int i = 0; i < count; i++) {
+            actions[i] = next();
+        }
+        return actions;
+    }
+
+    private ActionTypeAvro nextActionType() {
+        int roll = random.nextInt(10);
+        if (roll < 7) {
+            return ActionTypeAvro.VIEW;
+        }
+        return roll < 9 ? ActionTypeAvro.REGISTER : ActionTypeAvro.LIKE;
+    }
+}
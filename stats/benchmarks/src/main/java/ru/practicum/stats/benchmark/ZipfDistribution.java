@@ -0,0 +1,34 @@
+package ru.practicum.stats.benchmark;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Распределение Ципфа на значениях 0..n-1: значение k выпадает с вероятностью, пропорциональной 1 / (k + 1)^exponent.
+ * Функция распределения считается заранее, выборка - двоичным поиском по ней.
+ */
+public final class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    public ZipfDistribution(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Размер распределения должен быть положительным: " + n);
+        }
+        cumulative = new double[n];
+        double sum = 0.0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int value = index >= 0 ? index : -index - 1;
+        return Math.min(value, cumulative.length - 1);
+    }
+}
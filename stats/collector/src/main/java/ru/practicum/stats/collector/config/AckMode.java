@@ -0,0 +1,11 @@
+package ru.practicum.stats.collector.config;
+
+// Когда коллектор отвечает клиенту на принятое действие
+public enum AckMode {
+    // сразу после постановки записи в буфер продюсера, без ожидания брокера
+    FIRE_AND_FORGET,
+    // после подтверждения лидера партиции (acks=1)
+    LEADER_ACK,
+    // после записи на все синхронные реплики (acks=all, идемпотентный продюсер)
+    DURABLE
+}
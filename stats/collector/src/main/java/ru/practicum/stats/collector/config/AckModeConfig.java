@@ -0,0 +1,39 @@
+package ru.practicum.stats.collector.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+@Slf4j
+@Configuration
+public class AckModeConfig {
+
+    @Bean
+    public AckMode ackMode(@Value("${collector.ack-mode:fire-and-forget}") String value) {
+        AckMode mode = AckMode.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        log.info("Режим подтверждения действий: {}", mode);
+        return mode;
+    }
+
+    // acks продюсера под режим; FIRE_AND_FORGET оставляет настройки spring.kafka.producer как есть
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer ackModeProducerCustomizer(AckMode ackMode) {
+        return factory -> {
+            switch (ackMode) {
+                case LEADER_ACK -> factory.updateConfigs(Map.of(
+                        ProducerConfig.ACKS_CONFIG, "1",
+                        ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, false));
+                case DURABLE -> factory.updateConfigs(Map.of(
+                        ProducerConfig.ACKS_CONFIG, "all",
+                        ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true));
+                default -> {
+                }
+            }
+        };
+    }
+}
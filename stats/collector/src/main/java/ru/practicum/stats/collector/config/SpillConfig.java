@@ -0,0 +1,34 @@
+package ru.practicum.stats.collector.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import ru.practicum.stats.collector.service.KafkaUserActionProducer;
+import ru.practicum.stats.collector.spill.SpillDrainer;
+import ru.practicum.stats.collector.spill.SpillLog;
+
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(value = "collector.spill.enabled", havingValue = "true", matchIfMissing = true)
+public class SpillConfig {
+
+    // Закрывается SpillDrainer после остановки досылки
+    @Bean(destroyMethod = "")
+    public SpillLog spillLog(SpillProperties properties) {
+        if (!StringUtils.hasText(properties.getDir())) {
+            throw new IllegalStateException(
+                    "Не задан collector.spill.dir: укажите каталог на постоянном томе или выключите журнал");
+        }
+        return new SpillLog(Path.of(properties.getDir()),
+                (int) properties.getSegmentSize().toBytes(), properties.getMaxSegments());
+    }
+
+    @Bean
+    public SpillDrainer spillDrainer(SpillLog spillLog, KafkaUserActionProducer producer,
+                                     SpillProperties properties, MeterRegistry meterRegistry) {
+        return new SpillDrainer(spillLog, producer, properties, meterRegistry);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.stats.collector.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties("collector.spill")
+public class SpillProperties {
+    // false - действия, не принятые Kafka, теряются, как раньше
+    private boolean enabled = true;
+    // Обязателен при enabled: каталог на постоянном томе, иначе журнал пропадёт вместе с контейнером
+    private String dir;
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    // предел журнала на диске: segmentSize * maxSegments
+    private int maxSegments = 16;
+    // сколько записей журнала досылается за одну пачку
+    private int drainBatch = 500;
+    // пауза перед повтором, пока Kafka недоступна
+    private Duration retryBackoff = Duration.ofSeconds(1);
+    // как часто отображённые сегменты сбрасываются на диск
+    private Duration forceInterval = Duration.ofSeconds(1);
+}
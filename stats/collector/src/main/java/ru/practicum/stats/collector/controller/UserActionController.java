@@ -23,13 +23,17 @@ public class UserActionController extends UserActionControllerGrpc.UserActionCon
         try {
             log.info("Collecting user action for user {}: action={}",
                     request.getUserId(), request.getActionType());
+            // Ответ отправляет сервис в момент, заданный режимом подтверждения
             userActionService.collectUserAction(request, responseObserver);
-            responseObserver.onNext(Empty.getDefaultInstance());
-            responseObserver.onCompleted();
         } catch (Exception e) {
             log.error("Error processing request: {}", e.getMessage(), e);
             responseObserver.onError(new StatusRuntimeException(Status.fromThrowable(e)));
         }
     }
-}
 
+    @Override
+    public StreamObserver<UserActionProto> collectUserActions(StreamObserver<Empty> responseObserver) {
+        log.info("Collecting user actions batch");
+        return userActionService.collectUserActions(responseObserver);
+    }
+}
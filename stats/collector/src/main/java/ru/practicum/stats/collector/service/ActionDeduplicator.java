@@ -0,0 +1,139 @@
+package ru.practicum.stats.collector.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Окно подавления повторов: одинаковые (userId, eventId, actionType) в пределах окна не отправляются в Kafka,
+ * агрегатор всё равно отбросил бы их, так как вес взаимодействия не растёт.
+ * <p>
+ * Ключи хранятся в двух поколениях: текущее принимает новые ключи, предыдущее только проверяется. Поколения
+ * сменяются раз в window или раньше, если текущее набрало maxKeys, поэтому повтор подавляется от window
+ * до 2 * window после первого действия, а памяти нужно не больше 2 * maxKeys ключей.
+ * <p>
+ * Вместе с ключом хранится future первой отправки, и повтор получает её же: пока отправка не подтверждена,
+ * повтор не подтверждается раньше неё. Если отправка не удалась, повторы завершаются той же ошибкой, а ключ
+ * снимается, чтобы повтор клиента ушёл в Kafka.
+ */
+@Component
+public class ActionDeduplicator {
+
+    private final boolean enabled;
+    private final Set<ActionTypeAvro> actionTypes;
+    private final long windowNanos;
+    private final int maxKeys;
+    private static final CompletableFuture<Void> SENT = CompletableFuture.completedFuture(null);
+
+    private final Map<ActionTypeAvro, Counter> suppressed = new EnumMap<>(ActionTypeAvro.class);
+
+    private volatile Generation current = new Generation();
+    private volatile Generation previous = new Generation();
+    private volatile long rotateAt;
+
+    public ActionDeduplicator(@Value("${collector.dedup.enabled:true}") boolean enabled,
+                              @Value("${collector.dedup.action-types:VIEW}") Set<ActionTypeAvro> actionTypes,
+                              @Value("${collector.dedup.window:1m}") Duration window,
+                              @Value("${collector.dedup.max-keys:200000}") int maxKeys,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.actionTypes = actionTypes.isEmpty() ? EnumSet.noneOf(ActionTypeAvro.class) : EnumSet.copyOf(actionTypes);
+        this.windowNanos = window.toNanos();
+        this.maxKeys = maxKeys;
+        this.rotateAt = System.nanoTime() + windowNanos;
+        for (ActionTypeAvro type : ActionTypeAvro.values()) {
+            suppressed.put(type, Counter.builder("collector.dedup.suppressed")
+                    .description("Повторные действия, не отправленные в Kafka")
+                    .tag("type", type.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    // Отправляет действие через sender либо, если такое же действие уже было в окне, возвращает future его отправки
+    public CompletableFuture<Void> send(UserActionAvro action,
+                                        Function<UserActionAvro, CompletableFuture<Void>> sender) {
+        if (!enabled || !actionTypes.contains(action.getActionType())) {
+            return sender.apply(action);
+        }
+        Key key = Key.of(action);
+        Generation generation = currentGeneration();
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        CompletableFuture<Void> original = previous.keys.get(key);
+        if (original == null) {
+            original = generation.putIfAbsent(key, pending);
+        }
+        if (original != null) {
+            suppressed.get(action.getActionType()).increment();
+            return original;
+        }
+        CompletableFuture<Void> send;
+        try {
+            send = sender.apply(action);
+        } catch (RuntimeException e) {
+            generation.keys.remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        send.whenComplete((ignored, ex) -> {
+            if (ex == null) {
+                // Завершённая отправка больше не держит свою future
+                generation.keys.replace(key, pending, SENT);
+                pending.complete(null);
+            } else {
+                generation.keys.remove(key, pending);
+                pending.completeExceptionally(ex);
+            }
+        });
+        return pending;
+    }
+
+    private Generation currentGeneration() {
+        Generation generation = current;
+        long now = System.nanoTime();
+        if (now - rotateAt >= 0 || generation.size.get() >= maxKeys) {
+            synchronized (this) {
+                if (current == generation) {
+                    // Пропуск больше одного окна - оба поколения устарели
+                    previous = (now - rotateAt >= windowNanos) ? new Generation() : generation;
+                    current = new Generation();
+                    rotateAt = now + windowNanos;
+                }
+                generation = current;
+            }
+        }
+        return generation;
+    }
+
+    private record Key(long userId, long eventId, ActionTypeAvro actionType) {
+        private static Key of(UserActionAvro action) {
+            return new Key(action.getUserId(), action.getEventId(), action.getActionType());
+        }
+    }
+
+    private static final class Generation {
+        private final Map<Key, CompletableFuture<Void>> keys = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        // Future уже запомненного действия либо null, если запомнено новое
+        private CompletableFuture<Void> putIfAbsent(Key key, CompletableFuture<Void> send) {
+            CompletableFuture<Void> existing = keys.putIfAbsent(key, send);
+            if (existing == null) {
+                size.incrementAndGet();
+            }
+            return existing;
+        }
+    }
+}
@@ -1,28 +1,82 @@
 package ru.practicum.stats.collector.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 
+import ru.practicum.kafka.serializer.GeneralAvroSerializer;
+import ru.practicum.stats.collector.config.AckMode;
 import ru.practicum.stats.collector.config.KafkaTopic;
 import ru.practicum.stats.collector.config.KafkaTopicConfig;
+import ru.practicum.stats.collector.spill.SpillLog;
 
 import java.util.concurrent.CompletableFuture;
 
+/**
+ * Отправка действий в Kafka. Если задан {@link SpillLog}, действие, которое продюсер не принял или не доставил,
+ * пишется в журнал и досылается SpillDrainer. Пока журнал не пуст, новые действия тоже идут в журнал,
+ * чтобы не обгонять недосланные. В режиме {@link AckMode#DURABLE} журнал сбрасывается на диск до завершения
+ * future, иначе подтверждённое клиенту действие пропало бы при сбое хоста до периодического сброса.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class KafkaUserActionProducer implements AutoCloseable {
 
+    private static final String SPILL_TOPIC = "spill";
+
     private final KafkaTemplate<Long, SpecificRecordBase> producer;
     private final KafkaTopicConfig topicConfig;
+    private final SpillLog spillLog;
+    private final boolean forceSpill;
+    private final GeneralAvroSerializer serializer = new GeneralAvroSerializer();
+    private final Counter spilledCounter;
+    private final Counter rejectedCounter;
+
+    public KafkaUserActionProducer(KafkaTemplate<Long, SpecificRecordBase> producer,
+                                   KafkaTopicConfig topicConfig,
+                                   @Nullable SpillLog spillLog,
+                                   AckMode ackMode,
+                                   MeterRegistry meterRegistry) {
+        this.producer = producer;
+        this.topicConfig = topicConfig;
+        this.spillLog = spillLog;
+        this.forceSpill = ackMode == AckMode.DURABLE;
+        this.spilledCounter = Counter.builder("collector.spill.appended")
+                .description("Действия, записанные в журнал вместо Kafka")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("collector.spill.rejected")
+                .description("Действия, не принятые переполненным или закрытым журналом")
+                .register(meterRegistry);
+    }
+
+    // Future завершается после подтверждения брокера или записи в журнал; вызывающий может не ждать его
+    public CompletableFuture<Void> send(UserActionAvro userAction, KafkaTopic topic) {
+        if (spillLog == null) {
+            return sendToKafka(userAction, topic).thenApply(result -> null);
+        }
+        if (!spillLog.isEmpty()) {
+            return spill(userAction);
+        }
+        CompletableFuture<SendResult<Long, SpecificRecordBase>> future;
+        try {
+            future = sendToKafka(userAction, topic);
+        } catch (RuntimeException e) {
+            // Метаданные или буфер продюсера недоступны дольше max.block.ms
+            return spill(userAction);
+        }
+        return future.handle((result, ex) -> ex)
+                .thenCompose(ex -> ex == null ? CompletableFuture.<Void>completedFuture(null) : spill(userAction));
+    }
 
-    public void send(UserActionAvro userAction, KafkaTopic topic) {
+    // Отправка без журнала, в том числе для досылки из него
+    public CompletableFuture<SendResult<Long, SpecificRecordBase>> sendToKafka(UserActionAvro userAction, KafkaTopic topic) {
         ProducerRecord<Long, SpecificRecordBase> record =
                 new ProducerRecord<>(
                         topicConfig.getTopics().get(topic),
@@ -42,6 +96,20 @@ public class KafkaUserActionProducer implements AutoCloseable {
                 log.error("Ошибка отправки user action {}, error: {}", userAction.getClass().getSimpleName(), ex.getMessage());
             }
         });
+        return future;
+    }
+
+    private CompletableFuture<Void> spill(UserActionAvro userAction) {
+        if (spillLog.append(serializer.serialize(SPILL_TOPIC, userAction))) {
+            spilledCounter.increment();
+            if (forceSpill) {
+                spillLog.force();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        rejectedCounter.increment();
+        return CompletableFuture.failedFuture(
+                new IllegalStateException("Журнал недосланных действий переполнен или закрыт"));
     }
 
     @Override
@@ -50,4 +118,4 @@ public class KafkaUserActionProducer implements AutoCloseable {
         producer.flush();
         producer.destroy();
     }
-}
\ No newline at end of file
+}
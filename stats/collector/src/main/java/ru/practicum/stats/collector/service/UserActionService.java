@@ -1,24 +1,138 @@
 package ru.practicum.stats.collector.service;
 
 import com.google.protobuf.Empty;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.stats.avro.ActionTypeAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 import ru.practicum.grpc.stats.action.UserActionProto;
+import ru.practicum.stats.collector.config.AckMode;
 import ru.practicum.stats.collector.config.KafkaTopic;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Приём действий пользователей. Момент ответа клиенту задаёт {@link AckMode}: в FIRE_AND_FORGET ответ уходит
+ * сразу после передачи записи продюсеру, в остальных режимах - по завершении future отправки.
+ * Время от получения запроса до ответа пишется в гистограмму collector.ack.latency с тегами mode и rpc.
+ * Повторы в окне {@link ActionDeduplicator} не отправляются и подтверждаются вместе с первой отправкой.
+ */
 @Slf4j
-@RequiredArgsConstructor
 @Service
 public class UserActionService {
     private final KafkaUserActionProducer kafkaProducer;
+    private final ActionDeduplicator deduplicator;
+    private final AckMode ackMode;
+    private final Timer unaryLatency;
+    private final Timer batchLatency;
+
+    public UserActionService(KafkaUserActionProducer kafkaProducer, ActionDeduplicator deduplicator,
+                             AckMode ackMode, MeterRegistry meterRegistry) {
+        this.kafkaProducer = kafkaProducer;
+        this.deduplicator = deduplicator;
+        this.ackMode = ackMode;
+        this.unaryLatency = ackLatency(meterRegistry, "CollectUserAction");
+        this.batchLatency = ackLatency(meterRegistry, "CollectUserActions");
+    }
 
     public void collectUserAction(UserActionProto request, StreamObserver<Empty> responseObserver) {
+        long start = System.nanoTime();
+        CompletableFuture<?> send = send(toAvro(request));
+        respond(ackMode == AckMode.FIRE_AND_FORGET ? CompletableFuture.completedFuture(null) : send,
+                responseObserver, unaryLatency, start, "Не удалось сохранить действие");
+    }
+
+    /**
+     * Приём пакета действий потоком. Каждое действие отправляется продюсеру сразу по получении, не дожидаясь
+     * подтверждения предыдущих, поэтому отправки пакета идут конвейером. Ответ один на пакет: после завершения
+     * потока клиентом и, кроме FIRE_AND_FORGET, подтверждения всех отправок; при ошибке любой отправки пакет
+     * завершается ошибкой, и клиент может повторить его целиком.
+     */
+    public StreamObserver<UserActionProto> collectUserActions(StreamObserver<Empty> responseObserver) {
+        long start = System.nanoTime();
+        return new StreamObserver<>() {
+            private final List<CompletableFuture<?>> sends = new ArrayList<>();
+            private boolean failed;
+
+            @Override
+            public void onNext(UserActionProto request) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    sends.add(send(toAvro(request)));
+                } catch (IllegalArgumentException e) {
+                    failed = true;
+                    responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+                } catch (RuntimeException e) {
+                    // Например, ошибка сериализации в send: пакет нельзя подтверждать частично
+                    failed = true;
+                    log.error("Не удалось отправить действие пакета: {}", e.getMessage());
+                    responseObserver.onError(Status.INTERNAL
+                            .withDescription("Не удалось отправить пакет действий")
+                            .withCause(e)
+                            .asRuntimeException());
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Пакет действий прерван клиентом после {} действий: {}", sends.size(), t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) {
+                    return;
+                }
+                log.debug("Получен пакет из {} действий", sends.size());
+                CompletableFuture<?> acked = (ackMode == AckMode.FIRE_AND_FORGET)
+                        ? CompletableFuture.completedFuture(null)
+                        : CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new));
+                respond(acked, responseObserver, batchLatency, start, "Не удалось отправить пакет действий");
+            }
+        };
+    }
+
+    private CompletableFuture<?> send(UserActionAvro userAction) {
+        return deduplicator.send(userAction, action -> kafkaProducer.send(action, KafkaTopic.USER_ACTIONS));
+    }
+
+    private void respond(CompletableFuture<?> acked, StreamObserver<Empty> responseObserver,
+                         Timer latency, long start, String errorDescription) {
+        acked.whenComplete((ignored, ex) -> {
+            if (ex == null) {
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            } else {
+                log.error("{}: {}", errorDescription, ex.getMessage());
+                responseObserver.onError(Status.UNAVAILABLE
+                        .withDescription(errorDescription)
+                        .withCause(ex)
+                        .asRuntimeException());
+            }
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private Timer ackLatency(MeterRegistry meterRegistry, String rpc) {
+        return Timer.builder("collector.ack.latency")
+                .description("Время от получения действий до ответа клиенту")
+                .tag("mode", ackMode.name().toLowerCase())
+                .tag("rpc", rpc)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private UserActionAvro toAvro(UserActionProto request) {
         ActionTypeAvro actionType;
         switch (request.getActionType()) {
             case ACTION_VIEW -> actionType = ActionTypeAvro.VIEW;
@@ -26,12 +140,11 @@ public class UserActionService {
             case ACTION_LIKE -> actionType = ActionTypeAvro.LIKE;
             default -> throw new IllegalArgumentException("Unknown action type: " + request.getActionType());
         }
-        UserActionAvro avro = UserActionAvro.newBuilder()
+        return UserActionAvro.newBuilder()
                 .setUserId(request.getUserId())
                 .setActionType(actionType)
                 .setEventId(request.getEventId())
                 .setTimestamp(Instant.ofEpochSecond(request.getTimestamp().getSeconds(), request.getTimestamp().getNanos()))
                 .build();
-        kafkaProducer.send(avro, KafkaTopic.USER_ACTIONS);
     }
-}
\ No newline at end of file
+}
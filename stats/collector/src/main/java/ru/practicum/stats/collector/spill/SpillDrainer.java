@@ -0,0 +1,154 @@
+package ru.practicum.stats.collector.spill;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.kafka.deserializer.UserActionDeserializer;
+import ru.practicum.stats.collector.config.KafkaTopic;
+import ru.practicum.stats.collector.config.SpillProperties;
+import ru.practicum.stats.collector.service.KafkaUserActionProducer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая досылка журнала в Kafka в порядке записи. Пачка записей отправляется целиком, прочитанными помечаются
+ * записи до первой неподтверждённой; остаток пачки повторяется после паузы. Записи остатка, которые брокер
+ * успел принять, придут в Kafka повторно: доставка из журнала at-least-once. Тот же поток периодически
+ * сбрасывает журнал на диск. После остановки журнал закрыт, и запоздавшие записи продюсера им отклоняются.
+ */
+@Slf4j
+public class SpillDrainer implements SmartLifecycle {
+
+    private static final String TOPIC = "spill";
+
+    private final SpillLog spillLog;
+    private final KafkaUserActionProducer producer;
+    private final SpillProperties properties;
+    private final UserActionDeserializer deserializer = new UserActionDeserializer();
+    private final Counter replayedCounter;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public SpillDrainer(SpillLog spillLog, KafkaUserActionProducer producer, SpillProperties properties,
+                        MeterRegistry meterRegistry) {
+        this.spillLog = spillLog;
+        this.producer = producer;
+        this.properties = properties;
+        this.replayedCounter = Counter.builder("collector.spill.replayed")
+                .description("Действия из журнала, досланные в Kafka")
+                .register(meterRegistry);
+        Gauge.builder("collector.spill.pending", spillLog, SpillLog::pendingRecords)
+                .description("Действия в журнале, ещё не досланные в Kafka")
+                .register(meterRegistry);
+        Gauge.builder("collector.spill.bytes", spillLog, SpillLog::pendingBytes)
+                .description("Объём недосланных записей журнала")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = new Thread(this::drainLoop, "collector-spill-drainer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(properties.getRetryBackoff().toMillis() * 2);
+            spillLog.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Ошибка закрытия журнала", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        long forceAt = System.nanoTime() + properties.getForceInterval().toNanos();
+        boolean failing = false;
+        while (running) {
+            try {
+                if (System.nanoTime() >= forceAt) {
+                    spillLog.force();
+                    forceAt = System.nanoTime() + properties.getForceInterval().toNanos();
+                }
+                List<byte[]> batch = spillLog.peek(properties.getDrainBatch());
+                if (batch.isEmpty()) {
+                    Thread.sleep(Math.min(properties.getForceInterval().toMillis(), 100));
+                    continue;
+                }
+                drain(batch);
+                if (failing) {
+                    log.info("Kafka снова принимает действия, досылка журнала продолжается");
+                    failing = false;
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (!failing) {
+                    log.warn("Досылка журнала приостановлена: {}", e.getMessage());
+                    failing = true;
+                }
+                try {
+                    Thread.sleep(properties.getRetryBackoff().toMillis());
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void drain(List<byte[]> batch) throws Exception {
+        List<CompletableFuture<?>> sends = new ArrayList<>(batch.size());
+        for (byte[] data : batch) {
+            UserActionAvro action;
+            try {
+                action = deserializer.deserialize(TOPIC, data);
+            } catch (RuntimeException e) {
+                // Повреждённая запись не должна останавливать досылку остальных
+                log.error("Пропуск нечитаемой записи журнала", e);
+                sends.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+            sends.add(producer.sendToKafka(action, KafkaTopic.USER_ACTIONS));
+        }
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(properties.getRetryBackoff().toMillis() + 30_000, TimeUnit.MILLISECONDS);
+        } finally {
+            advance(acknowledgedPrefix(sends));
+        }
+    }
+
+    private void advance(int count) {
+        if (count > 0) {
+            spillLog.advance(count);
+            replayedCounter.increment(count);
+        }
+    }
+
+    private static int acknowledgedPrefix(List<CompletableFuture<?>> sends) {
+        int count = 0;
+        while (count < sends.size() && sends.get(count).isDone() && !sends.get(count).isCompletedExceptionally()) {
+            count++;
+        }
+        return count;
+    }
+}
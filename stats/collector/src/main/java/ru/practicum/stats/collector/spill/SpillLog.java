@@ -0,0 +1,267 @@
+package ru.practicum.stats.collector.spill;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал действий, не принятых Kafka: файлы-сегменты фиксированного размера на локальном диске,
+ * отображённые в память, запись только в конец.
+ * <p>
+ * Сегмент: 8 байт смещения чтения, затем записи [длина int][crc32 int][данные]. Длина пишется последней,
+ * поэтому нулевая длина или неверная crc означают конец записанных данных, в том числе после аварийной остановки.
+ * Смещение чтения сохраняется в заголовке после каждого {@link #advance(int)}, прочитанные сегменты удаляются.
+ * После перезапуска запись идёт в новый сегмент. Журнал ограничен maxSegments сегментами: при переполнении,
+ * как и после {@link #close()}, {@link #append(byte[])} возвращает false.
+ * Записанное попадает на диск при {@link #force()}, который сбрасывает только изменённые с прошлого раза сегменты.
+ * Методы потокобезопасны.
+ */
+public class SpillLog implements Closeable {
+
+    private static final int HEADER = Long.BYTES;
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    private static final String SUFFIX = ".spill";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private long nextSequence;
+    private long pendingBytes;
+    private long pendingRecords;
+    private boolean closed;
+
+    public SpillLog(Path dir, int segmentSize, int maxSegments) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        try {
+            Files.createDirectories(dir);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(dir)) {
+                files = list.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+            }
+            for (Path file : files) {
+                Segment segment = recover(file);
+                nextSequence = Math.max(nextSequence, segment.sequence + 1);
+                if (segment.isConsumed()) {
+                    segment.delete();
+                } else {
+                    segments.addLast(segment);
+                    pendingBytes += segment.writePos - segment.readPos;
+                    pendingRecords += segment.records;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + dir, e);
+        }
+    }
+
+    public synchronized boolean append(byte[] data) {
+        int size = RECORD_HEADER + data.length;
+        if (data.length == 0 || size > segmentSize - HEADER) {
+            throw new IllegalArgumentException("Недопустимый размер записи журнала: " + data.length);
+        }
+        if (closed) {
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.sealed || tail.writePos + size > tail.capacity) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            tail = create();
+            segments.addLast(tail);
+        }
+        crc.reset();
+        crc.update(data);
+        MappedByteBuffer buffer = tail.buffer;
+        buffer.putInt(tail.writePos + Integer.BYTES, (int) crc.getValue());
+        buffer.put(tail.writePos + RECORD_HEADER, data);
+        buffer.putInt(tail.writePos, data.length);
+        tail.writePos += size;
+        tail.records++;
+        tail.dirty = true;
+        pendingBytes += size;
+        pendingRecords++;
+        return true;
+    }
+
+    // Не больше max записей с начала журнала без их удаления
+    public synchronized List<byte[]> peek(int max) {
+        List<byte[]> result = new ArrayList<>();
+        for (Segment segment : segments) {
+            int pos = segment.readPos;
+            while (pos < segment.writePos && result.size() < max) {
+                int length = segment.buffer.getInt(pos);
+                byte[] data = new byte[length];
+                segment.buffer.get(pos + RECORD_HEADER, data);
+                result.add(data);
+                pos += RECORD_HEADER + length;
+            }
+            if (result.size() >= max) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // Помечает прочитанными count первых записей
+    public synchronized void advance(int count) {
+        while (count > 0) {
+            Segment head = segments.peekFirst();
+            if (head == null) {
+                throw new IllegalStateException("В журнале меньше записей, чем помечается прочитанными");
+            }
+            while (count > 0 && head.readPos < head.writePos) {
+                int size = RECORD_HEADER + head.buffer.getInt(head.readPos);
+                head.readPos += size;
+                head.records--;
+                pendingBytes -= size;
+                pendingRecords--;
+                count--;
+            }
+            head.buffer.putLong(0, head.readPos);
+            head.dirty = true;
+            // Текущий сегмент записи остаётся, даже прочитанный целиком
+            if (head.isConsumed() && head != segments.peekLast()) {
+                segments.pollFirst();
+                head.delete();
+            } else if (count > 0) {
+                throw new IllegalStateException("В журнале меньше записей, чем помечается прочитанными");
+            }
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    public synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized long pendingRecords() {
+        return pendingRecords;
+    }
+
+    // Сброс на диск сегментов, изменённых после прошлого сброса
+    public synchronized void force() {
+        for (Segment segment : segments) {
+            if (segment.dirty) {
+                segment.buffer.force();
+                segment.dirty = false;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        force();
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private Segment create() {
+        Path file = dir.resolve(String.format("%020d%s", nextSequence, SUFFIX));
+        try {
+            Segment segment = open(file, nextSequence++, segmentSize);
+            segment.buffer.putLong(0, HEADER);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала " + file, e);
+        }
+    }
+
+    // Конец данных ищется по записям: до нулевой длины, выхода за сегмент или неверной crc.
+    // Восстановленный сегмент закрыт для записи: за найденным концом могут остаться обрывки
+    private Segment recover(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        long sequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        Segment segment = open(file, sequence, (int) Files.size(file));
+        MappedByteBuffer buffer = segment.buffer;
+        long readPos = buffer.getLong(0);
+        int pos = HEADER;
+        int unread = 0;
+        while (pos + RECORD_HEADER <= segment.capacity) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + RECORD_HEADER + length > segment.capacity) {
+                break;
+            }
+            byte[] data = new byte[length];
+            buffer.get(pos + RECORD_HEADER, data);
+            crc.reset();
+            crc.update(data);
+            if ((int) crc.getValue() != buffer.getInt(pos + Integer.BYTES)) {
+                break;
+            }
+            if (pos >= readPos) {
+                unread++;
+            }
+            pos += RECORD_HEADER + length;
+        }
+        segment.writePos = pos;
+        segment.readPos = (int) Math.min(Math.max(readPos, HEADER), pos);
+        segment.records = unread;
+        segment.sealed = true;
+        return segment;
+    }
+
+    private Segment open(Path file, long sequence, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new Segment(file, sequence, capacity, channel, buffer);
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final long sequence;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int readPos = HEADER;
+        private int writePos = HEADER;
+        private int records;
+        private boolean sealed;
+        private boolean dirty;
+
+        private Segment(Path file, long sequence, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.sequence = sequence;
+            this.capacity = capacity;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private boolean isConsumed() {
+            return readPos >= writePos;
+        }
+
+        // Отображение освобождается сборщиком мусора, файл удаляется сразу
+        private void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось удалить сегмент журнала " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.stats.collector.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ActionDeduplicatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActionDeduplicator deduplicator = new ActionDeduplicator(true, Set.of(ActionTypeAvro.VIEW),
+            Duration.ofMinutes(1), 1000, meterRegistry);
+    // Отправки, ещё не подтверждённые Kafka
+    private final List<CompletableFuture<Void>> sends = new ArrayList<>();
+
+    @Test
+    void duplicateWaitsForOriginalSend() {
+        CompletableFuture<Void> original = deduplicator.send(view(1, 2), this::send);
+        CompletableFuture<Void> duplicate = deduplicator.send(view(1, 2), this::send);
+
+        assertThat(sends).hasSize(1);
+        assertThat(duplicate.isDone()).isFalse();
+
+        sends.get(0).complete(null);
+
+        assertThat(original.isDone()).isTrue();
+        assertThat(duplicate.isDone()).isTrue();
+        assertThat(duplicate.isCompletedExceptionally()).isFalse();
+        assertThat(meterRegistry.get("collector.dedup.suppressed").tag("type", "view").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void duplicateAfterSuccessfulSendIsAcknowledgedWithoutSending() {
+        deduplicator.send(view(1, 2), this::send);
+        sends.get(0).complete(null);
+
+        CompletableFuture<Void> duplicate = deduplicator.send(view(1, 2), this::send);
+
+        assertThat(sends).hasSize(1);
+        assertThat(duplicate.isDone()).isTrue();
+        assertThat(duplicate.isCompletedExceptionally()).isFalse();
+    }
+
+    @Test
+    void failedSendFailsDuplicatesAndLetsRetryThrough() {
+        deduplicator.send(view(1, 2), this::send);
+        CompletableFuture<Void> duplicate = deduplicator.send(view(1, 2), this::send);
+
+        sends.get(0).completeExceptionally(new IllegalStateException("Kafka недоступна"));
+
+        assertThat(duplicate.isCompletedExceptionally()).isTrue();
+        deduplicator.send(view(1, 2), this::send);
+        assertThat(sends).hasSize(2);
+    }
+
+    @Test
+    void synchronousSendErrorForgetsAction() {
+        assertThatThrownBy(() -> deduplicator.send(view(1, 2), action -> {
+            throw new IllegalStateException("Ошибка сериализации");
+        })).isInstanceOf(IllegalStateException.class);
+
+        deduplicator.send(view(1, 2), this::send);
+
+        assertThat(sends).hasSize(1);
+    }
+
+    @Test
+    void otherActionsAreNotDeduplicated() {
+        deduplicator.send(view(1, 2), this::send);
+        deduplicator.send(view(1, 3), this::send);
+        deduplicator.send(action(1, 2, ActionTypeAvro.LIKE), this::send);
+        deduplicator.send(action(1, 2, ActionTypeAvro.LIKE), this::send);
+
+        assertThat(sends).hasSize(4);
+    }
+
+    private CompletableFuture<Void> send(UserActionAvro action) {
+        CompletableFuture<Void> send = new CompletableFuture<>();
+        sends.add(send);
+        return send;
+    }
+
+    private static UserActionAvro view(long userId, long eventId) {
+        return action(userId, eventId, ActionTypeAvro.VIEW);
+    }
+
+    private static UserActionAvro action(long userId, long eventId, ActionTypeAvro type) {
+        return UserActionAvro.newBuilder()
+                .setUserId(userId)
+                .setEventId(eventId)
+                .setActionType(type)
+                .setTimestamp(Instant.EPOCH)
+                .build();
+    }
+}
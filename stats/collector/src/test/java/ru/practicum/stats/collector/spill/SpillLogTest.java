@@ -0,0 +1,190 @@
+package ru.practicum.stats.collector.spill;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpillLogTest {
+
+    // Заголовок сегмента 8 байт, запись: длина 4 + crc 4 + данные
+    private static final int HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void peekReturnsRecordsInAppendOrderWithoutRemovingThem() throws IOException {
+        try (SpillLog log = new SpillLog(dir, 1024, 4)) {
+            append(log, "a", "b", "c");
+
+            assertThat(strings(log.peek(2))).containsExactly("a", "b");
+            assertThat(strings(log.peek(10))).containsExactly("a", "b", "c");
+            assertThat(log.pendingRecords()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void advanceRemovesReadRecordsAndEmptiesLog() throws IOException {
+        try (SpillLog log = new SpillLog(dir, 1024, 4)) {
+            append(log, "a", "b", "c");
+
+            log.advance(2);
+            assertThat(strings(log.peek(10))).containsExactly("c");
+
+            log.advance(1);
+            assertThat(log.isEmpty()).isTrue();
+            assertThat(log.pendingBytes()).isZero();
+            assertThatThrownBy(() -> log.advance(1)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    void rotatesSegmentsAndDeletesConsumedOnes() throws IOException {
+        // В сегмент помещаются две записи по 10 байт
+        int segmentSize = HEADER + 2 * (RECORD_HEADER + 10);
+        try (SpillLog log = new SpillLog(dir, segmentSize, 4)) {
+            append(log, "0123456789", "1123456789", "2123456789", "3123456789", "4123456789");
+            assertThat(segmentFiles()).hasSize(3);
+
+            log.advance(3);
+            assertThat(segmentFiles()).hasSize(2);
+            assertThat(strings(log.peek(10))).containsExactly("3123456789", "4123456789");
+        }
+    }
+
+    @Test
+    void rejectsAppendWhenAllSegmentsAreFull() throws IOException {
+        int segmentSize = HEADER + RECORD_HEADER + 10;
+        try (SpillLog log = new SpillLog(dir, segmentSize, 2)) {
+            assertThat(log.append(bytes("0123456789"))).isTrue();
+            assertThat(log.append(bytes("1123456789"))).isTrue();
+            assertThat(log.append(bytes("2123456789"))).isFalse();
+
+            log.advance(1);
+            assertThat(log.append(bytes("2123456789"))).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsAppendAfterClose() throws IOException {
+        SpillLog log = new SpillLog(dir, 1024, 4);
+        append(log, "a");
+        log.close();
+
+        assertThat(log.append(bytes("b"))).isFalse();
+        assertThat(segmentFiles()).hasSize(1);
+
+        try (SpillLog reopened = new SpillLog(dir, 1024, 4)) {
+            assertThat(strings(reopened.peek(10))).containsExactly("a");
+        }
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedRecords() throws IOException {
+        try (SpillLog log = new SpillLog(dir, HEADER + RECORD_HEADER + 4, 2)) {
+            assertThatThrownBy(() -> log.append(new byte[0])).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> log.append(new byte[5])).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void recoversUnreadRecordsAfterReopen() throws IOException {
+        int segmentSize = HEADER + 2 * (RECORD_HEADER + 1);
+        try (SpillLog log = new SpillLog(dir, segmentSize, 8)) {
+            append(log, "a", "b", "c", "d", "e");
+            log.advance(3);
+        }
+
+        try (SpillLog log = new SpillLog(dir, segmentSize, 8)) {
+            assertThat(log.pendingRecords()).isEqualTo(2);
+            assertThat(strings(log.peek(10))).containsExactly("d", "e");
+
+            // Восстановленные сегменты закрыты для записи, новые записи идут после них
+            append(log, "f");
+            log.advance(1);
+            assertThat(strings(log.peek(10))).containsExactly("e", "f");
+        }
+    }
+
+    @Test
+    void deletesFullyReadSegmentsOnReopen() throws IOException {
+        try (SpillLog log = new SpillLog(dir, 1024, 4)) {
+            append(log, "a", "b");
+            log.advance(2);
+        }
+        assertThat(segmentFiles()).hasSize(1);
+
+        try (SpillLog log = new SpillLog(dir, 1024, 4)) {
+            assertThat(log.isEmpty()).isTrue();
+            assertThat(segmentFiles()).isEmpty();
+        }
+    }
+
+    @Test
+    void stopsRecoveryAtRecordWithWrongChecksum() throws IOException {
+        try (SpillLog log = new SpillLog(dir, 1024, 4)) {
+            append(log, "aa", "bb", "cc");
+        }
+        // Портим данные второй записи
+        overwrite(segmentFiles().get(0), HEADER + (RECORD_HEADER + 2) + RECORD_HEADER, (byte) 'x');
+
+        try (SpillLog log = new SpillLog(dir, 1024, 4)) {
+            assertThat(strings(log.peek(10))).containsExactly("aa");
+        }
+    }
+
+    @Test
+    void stopsRecoveryAtLengthBeyondSegment() throws IOException {
+        try (SpillLog log = new SpillLog(dir, 64, 4)) {
+            append(log, "aa", "bb");
+        }
+        // Длина второй записи указывает за конец сегмента, как у оборванной записи
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1000), HEADER + RECORD_HEADER + 2);
+        }
+
+        try (SpillLog log = new SpillLog(dir, 64, 4)) {
+            assertThat(strings(log.peek(10))).containsExactly("aa");
+            assertThat(log.pendingRecords()).isEqualTo(1);
+        }
+    }
+
+    private static void append(SpillLog log, String... values) {
+        for (String value : values) {
+            assertThat(log.append(bytes(value))).isTrue();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream().map(data -> new String(data, StandardCharsets.UTF_8)).toList();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".spill")).sorted().toList();
+        }
+    }
+
+    private static void overwrite(Path file, long position, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{value}), position);
+        }
+    }
+}
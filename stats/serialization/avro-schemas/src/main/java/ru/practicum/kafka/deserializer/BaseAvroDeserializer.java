@@ -7,13 +7,31 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Десериализатор Avro-записей для консьюмеров Kafka. Читает прямо из буфера выборки без копирования
+ * и переиспользует BinaryDecoder. Не потокобезопасен: консьюмер вызывает его из своего потока.
+ * <p>
+ * При {@link #REUSE_RECORDS_CONFIG} = N > 0 записи берутся по кругу из N экземпляров и перезаписываются.
+ * Режим допустим, только если N не меньше max.poll.records и ссылки на записи не хранятся дольше
+ * обработки одного poll: следующий poll перезапишет записи предыдущего.
+ */
 public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deserializer<T> {
 
+    public static final String REUSE_RECORDS_CONFIG = "avro.reuse.records";
+
     private final DecoderFactory decoderFactory;
     private final DatumReader<T> reader;
 
+    private BinaryDecoder decoder;
+    private Object[] reusable;
+    private int next;
+
     public BaseAvroDeserializer(Schema schema) {
         this(DecoderFactory.get(), schema);
     }
@@ -23,16 +41,48 @@ public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deser
         this.reader = new SpecificDatumReader<>(schema);
     }
 
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object value = configs.get(REUSE_RECORDS_CONFIG);
+        int size = (value != null) ? Integer.parseInt(value.toString()) : 0;
+        reusable = (size > 0) ? new Object[size] : null;
+        next = 0;
+    }
+
     @Override
     public T deserialize(String topic, byte[] data) {
         if (data == null) {
             return null;
         }
+        return read(topic, data, 0, data.length);
+    }
+
+    @Override
+    public T deserialize(String topic, Headers headers, ByteBuffer data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.hasArray()) {
+            return read(topic, data.array(), data.arrayOffset() + data.position(), data.remaining());
+        }
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        return read(topic, copy, 0, copy.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T read(String topic, byte[] data, int offset, int length) {
         try {
-            BinaryDecoder decoder = decoderFactory.binaryDecoder(data, null);
-            return reader.read(null, decoder);
+            decoder = decoderFactory.binaryDecoder(data, offset, length, decoder);
+            if (reusable == null) {
+                return reader.read(null, decoder);
+            }
+            T record = reader.read((T) reusable[next], decoder);
+            reusable[next] = record;
+            next = (next + 1) % reusable.length;
+            return record;
         } catch (Exception e) {
             throw new SerializationException("Ошибка десериализации данных из топика " + topic, e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package ru.practicum.kafka.deserializer;
+
+import ru.practicum.ewm.stats.avro.EventNeighboursAvro;
+
+public class EventNeighboursDeserializer extends BaseAvroDeserializer<EventNeighboursAvro> {
+    public EventNeighboursDeserializer() {
+        super(EventNeighboursAvro.getClassSchema());
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.kafka.serializer;
 
+import org.apache.avro.Schema;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.EncoderFactory;
@@ -10,24 +11,62 @@ import org.apache.kafka.common.serialization.Serializer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Сериализатор Avro-записей для продюсеров Kafka. Потокобезопасен: send продюсера может вызываться
+ * из нескольких потоков. DatumWriter создаётся один раз на схему, буфер и энкодер у каждого потока свои,
+ * поэтому на запись выделяется только итоговый массив байт.
+ */
 public class GeneralAvroSerializer implements Serializer<SpecificRecordBase> {
+
+    // Буфер потока, выросший больше этого размера, не переиспользуется, чтобы не удерживать память
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
     private final EncoderFactory encoderFactory = EncoderFactory.get();
-    private BinaryEncoder encoder;
+    private final Map<Schema, DatumWriter<SpecificRecordBase>> writers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(Output::new);
 
     @Override
     public byte[] serialize(String topic, SpecificRecordBase data) {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            if (data != null) {
-                DatumWriter<SpecificRecordBase> writer = new SpecificDatumWriter<>(data.getSchema());
-                encoder = encoderFactory.binaryEncoder(out, encoder);
-                writer.write(data, encoder);
-                encoder.flush();
-            }
-            return out.toByteArray();
-        } catch (IOException ex) {
+        if (data == null) {
+            return null;
+        }
+        Output output = outputs.get();
+        try {
+            DatumWriter<SpecificRecordBase> writer = writers.computeIfAbsent(data.getSchema(), SpecificDatumWriter::new);
+            output.buffer.reset();
+            output.encoder = encoderFactory.directBinaryEncoder(output.buffer, output.encoder);
+            writer.write(data, output.encoder);
+            output.encoder.flush();
+            return output.buffer.toByteArray();
+        } catch (IOException | RuntimeException ex) {
             throw new SerializationException("Ошибка сериализации данных для топика [" + topic + "]", ex);
+        } finally {
+            if (output.buffer.capacity() > MAX_RETAINED_BUFFER) {
+                outputs.remove();
+            }
         }
     }
-}
 
+    @Override
+    public void close() {
+        outputs.remove();
+    }
+
+    private static final class Output {
+        private final ReusableByteArrayOutputStream buffer = new ReusableByteArrayOutputStream();
+        private BinaryEncoder encoder;
+    }
+
+    private static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+        private ReusableByteArrayOutputStream() {
+            super(256);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -1,12 +1,42 @@
 package ru.practicum.client;
 
+import com.google.protobuf.Empty;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ru.practicum.grpc.stats.action.UserActionProto;
 import ru.practicum.grpc.stats.collector.UserActionControllerGrpc;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Клиент Collector.
+ * <p>
+ * В синхронном режиме действие отправляется унарным вызовом в потоке запроса. В асинхронном
+ * (stats.collector-client.async = true) действие кладётся в ограниченную очередь, и фоновый поток отправляет
+ * пакеты потоковым вызовом CollectUserActions, когда набран batch-size действий или прошло flush-interval.
+ * Пакеты отправляются конвейером: одновременно ждут ответа не больше max-in-flight пакетов.
+ * При переполнении очереди действие отбрасывается без ожидания: потеря просмотра дешевле задержки страницы.
+ * При остановке очередь досылается не дольше shutdown-timeout, не успевшие уйти действия считаются отброшенными.
+ * Отброшенные, отправленные и неотправленные действия видны в метриках stats.client.collector.*.
+ */
 @Slf4j
 @Component
 public class CollectorClient {
@@ -14,7 +44,90 @@ public class CollectorClient {
     @GrpcClient("collector")
     private UserActionControllerGrpc.UserActionControllerBlockingStub userActionClient;
 
+    @GrpcClient("collector")
+    private UserActionControllerGrpc.UserActionControllerStub userActionAsyncClient;
+
+    private final boolean async;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration sendTimeout;
+    private final Duration shutdownTimeout;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final BlockingQueue<UserActionProto> queue;
+    private final Counter droppedCounter;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread sender;
+
+    public CollectorClient(@Value("${stats.collector-client.async:false}") boolean async,
+                           @Value("${stats.collector-client.queue-capacity:10000}") int queueCapacity,
+                           @Value("${stats.collector-client.batch-size:100}") int batchSize,
+                           @Value("${stats.collector-client.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${stats.collector-client.send-timeout:5s}") Duration sendTimeout,
+                           @Value("${stats.collector-client.max-in-flight:4}") int maxInFlight,
+                           @Value("${stats.collector-client.shutdown-timeout:10s}") Duration shutdownTimeout,
+                           ObjectProvider<MeterRegistry> meterRegistry) {
+        this.async = async;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.sendTimeout = sendTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.droppedCounter = Counter.builder("stats.client.collector.dropped")
+                .description("Действия, отброшенные из-за переполнения очереди или при остановке")
+                .register(registry);
+        this.sentCounter = Counter.builder("stats.client.collector.sent")
+                .description("Действия, принятые Collector")
+                .register(registry);
+        this.failedCounter = Counter.builder("stats.client.collector.failed")
+                .description("Действия, которые не удалось отправить")
+                .register(registry);
+        Gauge.builder("stats.client.collector.queue", queue, BlockingQueue::size)
+                .description("Действия в очереди на отправку")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        sender = new Thread(this::sendLoop, "collector-client-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (sender == null) {
+            return;
+        }
+        running = false;
+        sender.interrupt();
+        // Досылка ограничена shutdownTimeout, последний пакет ждёт ответа ещё не дольше sendTimeout
+        sender.join(shutdownTimeout.plus(sendTimeout).toMillis());
+        if (sender.isAlive()) {
+            log.warn("Фоновая отправка в Collector не завершилась за {}", shutdownTimeout.plus(sendTimeout));
+        }
+    }
+
     public void sendUserAction(UserActionProto userAction) {
+        if (async) {
+            if (!queue.offer(userAction)) {
+                droppedCounter.increment();
+                log.debug("Очередь отправки в Collector заполнена, действие отброшено: userId={}, eventId={}",
+                        userAction.getUserId(), userAction.getEventId());
+            }
+            return;
+        }
         try {
             log.info("Отправка действия пользователя в Collector: userId={}, eventId={}, action={}",
                     userAction.getUserId(),
@@ -22,10 +135,116 @@ public class CollectorClient {
                     userAction.getActionType());
 
             userActionClient.collectUserAction(userAction);
+            sentCounter.increment();
             log.debug("Действие пользователя успешно отправлено в Collector");
 
         } catch (StatusRuntimeException e) {
+            failedCounter.increment();
             log.error("Ошибка отправки действия пользователя в Collector: {}", e.getStatus().getDescription());
         }
     }
-}
\ No newline at end of file
+
+    private void sendLoop() {
+        List<UserActionProto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                UserActionProto first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Пакет добирается до batchSize, но ждёт не дольше flushInterval с первого действия
+                long flushAt = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = flushAt - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0) {
+                        break;
+                    }
+                    UserActionProto next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                inFlight.acquire();
+                sendBatch(List.copyOf(batch));
+                batch.clear();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                log.error("Ошибка фоновой отправки в Collector", e);
+                batch.clear();
+            }
+        }
+        drain(batch);
+    }
+
+    // При остановке досылается недоотправленный пакет и то, что осталось в очереди
+    private void drain(List<UserActionProto> batch) {
+        Thread.interrupted();
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        queue.drainTo(batch);
+        int from = 0;
+        try {
+            while (from < batch.size()
+                    && inFlight.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                int to = Math.min(from + batchSize, batch.size());
+                sendBatch(List.copyOf(batch.subList(from, to)));
+                from = to;
+            }
+            if (!inFlight.tryAcquire(maxInFlight, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("При остановке не дождались ответа Collector на отправленные пакеты");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int abandoned = batch.size() - from;
+        if (abandoned > 0) {
+            droppedCounter.increment(abandoned);
+            log.warn("При остановке не отправлено в Collector {} действий: истёк shutdown-timeout", abandoned);
+        }
+    }
+
+    // Отправляет пакет, не дожидаясь ответа; разрешение inFlight, взятое вызывающим, освобождается по ответу
+    private void sendBatch(List<UserActionProto> batch) {
+        int size = batch.size();
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            StreamObserver<UserActionProto> requests = userActionAsyncClient
+                    .withDeadlineAfter(sendTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .collectUserActions(new StreamObserver<>() {
+                        @Override
+                        public void onNext(Empty value) {
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            complete(done, size, t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            complete(done, size, null);
+                        }
+                    });
+            batch.forEach(requests::onNext);
+            requests.onCompleted();
+        } catch (RuntimeException e) {
+            complete(done, size, e);
+        }
+    }
+
+    private void complete(AtomicBoolean done, int size, Throwable error) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+        if (error == null) {
+            sentCounter.increment(size);
+        } else {
+            failedCounter.increment(size);
+            log.error("Ошибка отправки пакета из {} действий в Collector: {}", size, error.getMessage());
+        }
+        inFlight.release();
+    }
+}